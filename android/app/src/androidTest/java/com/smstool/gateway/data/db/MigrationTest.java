@@ -0,0 +1,110 @@
+package com.smstool.gateway.data.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Migrates a database created from the shipped v1 schema (app/schemas/.../1.json) to the
+ * current version, then opens it with Room, which validates every table, column, index and
+ * foreign key against the schema the annotation processor generated for the entities.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    @Test
+    public void migrate1ToCurrent() throws IOException {
+        try (SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1)) {
+            db.execSQL("INSERT INTO sms_jobs (jobId, toNumber, body, status, attempts, maxRetries, "
+                    + "createdAt, updatedAt, nextRetryAt, pendingReport) "
+                    + "VALUES ('job-1', '+15550100', 'hello', 'failed_retrying', 1, 3, 1000, 2000, 5000, 1)");
+        }
+
+        SupportSQLiteDatabase db = openMigrated();
+
+        try (Cursor cursor = db.query("SELECT status, attempts, nextRetryAt, pendingReport, "
+                + "subscriptionId, priority, segmentCount, encoding FROM sms_jobs WHERE jobId = 'job-1'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("failed_retrying", cursor.getString(0));
+            assertEquals(1, cursor.getInt(1));
+            assertEquals(5000, cursor.getLong(2));
+            assertEquals(1, cursor.getInt(3));
+            assertTrue(cursor.isNull(4));          // subscriptionId (v2)
+            assertEquals(0, cursor.getInt(5));     // priority (v3)
+            assertEquals(0, cursor.getInt(6));     // segmentCount (v4)
+            assertTrue(cursor.isNull(7));          // encoding (v4)
+        }
+
+        Set<String> indices = indexNames(db, "sms_jobs");
+        assertTrue(indices.contains("index_sms_jobs_status_priority_createdAt"));  // v3
+        assertTrue(indices.contains("index_sms_jobs_status_nextRetryAt"));         // v6
+        assertTrue(indices.contains("index_sms_jobs_pendingReport_updatedAt"));    // v6
+        assertTrue(indices.contains("index_sms_jobs_createdAt"));                  // v6
+
+        // v5: parts belong to their job and go with it
+        db.execSQL("PRAGMA foreign_keys = ON");
+        db.execSQL("INSERT INTO sms_job_parts (jobId, partIndex, status, updatedAt) "
+                + "VALUES ('job-1', 0, 'sent', 3000)");
+        db.execSQL("DELETE FROM sms_jobs WHERE jobId = 'job-1'");
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM sms_job_parts")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+    }
+
+    @Test
+    public void migratedRetryScanUsesIndex() throws IOException {
+        helper.createDatabase(TEST_DB, 1).close();
+        SupportSQLiteDatabase db = openMigrated();
+
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN SELECT * FROM sms_jobs "
+                + "WHERE status = 'failed_retrying' AND nextRetryAt <= 1000")) {
+            StringBuilder plan = new StringBuilder();
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndexOrThrow("detail"))).append('\n');
+            }
+            assertTrue(plan.toString(), plan.toString().contains("index_sms_jobs_status_nextRetryAt"));
+        }
+    }
+
+    // Run the migrations by opening the database with Room; opening fails if the result does
+    // not match the generated schema
+    private SupportSQLiteDatabase openMigrated() {
+        AppDatabase database = Room.databaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), AppDatabase.class, TEST_DB)
+                .addMigrations(AppDatabase.MIGRATIONS)
+                .build();
+        helper.closeWhenFinished(database);
+        return database.getOpenHelper().getWritableDatabase();
+    }
+
+    private static Set<String> indexNames(SupportSQLiteDatabase db, String table) {
+        Set<String> names = new HashSet<>();
+        try (Cursor cursor = db.query("PRAGMA index_list(" + table + ")")) {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+            }
+        }
+        return names;
+    }
+}
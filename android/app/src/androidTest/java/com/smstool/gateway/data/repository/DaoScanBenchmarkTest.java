@@ -0,0 +1,136 @@
+package com.smstool.gateway.data.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smstool.gateway.data.db.AppDatabase;
+import com.smstool.gateway.data.db.SmsJobDao;
+import com.smstool.gateway.data.db.SmsJobEntity;
+import com.smstool.gateway.data.model.SmsJobStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Time of the retry, pending-report and status-count scans at 100k and 1M rows.
+ * The table grows tenfold while the rows each scan returns stay the same, so indexed scans
+ * should take about as long at 1M as at 100k; a full scan would take about ten times longer.
+ * Results are logged under the DaoScanBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DaoScanBenchmarkTest {
+    private static final String TAG = "DaoScanBenchmark";
+    private static final String TEST_DB = "dao-scan-benchmark";
+    private static final int DUE_RETRIES = 100;
+    private static final int PENDING_REPORTS = 100;
+    private static final int INSERT_BATCH = 10_000;
+    private static final int RUNS = 21;
+
+    private Context context;
+    private AppDatabase db;
+    private SmsJobDao dao;
+    private int rows;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .build();
+        dao = db.smsJobDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void scansDoNotGrowWithTableSize() {
+        long now = System.currentTimeMillis();
+        // The rows the scans look for, then the delivered bulk the indices have to skip
+        List<SmsJobEntity> wanted = new ArrayList<>();
+        for (int i = 0; i < DUE_RETRIES; i++) {
+            SmsJobEntity job = job("retry-" + i, SmsJobStatus.FAILED_RETRYING, now);
+            job.nextRetryAt = now - i;
+            wanted.add(job);
+        }
+        for (int i = 0; i < PENDING_REPORTS; i++) {
+            SmsJobEntity job = job("report-" + i, SmsJobStatus.SENT, now);
+            job.pendingReport = true;
+            wanted.add(job);
+        }
+        db.runInTransaction(() -> dao.insertJobs(wanted));
+
+        fillTo(100_000, now);
+        long[] at100k = measure(now);
+        fillTo(1_000_000, now);
+        long[] at1m = measure(now);
+
+        String[] scans = {"ready for retry", "pending reports", "count by status"};
+        for (int i = 0; i < scans.length; i++) {
+            Log.i(TAG, scans[i] + ": " + at100k[i] / 1000 + " us at 100k rows, "
+                    + at1m[i] / 1000 + " us at 1M rows");
+        }
+        // Linear growth would be about 10x; allow 3x (over a 0.1 ms floor) for a bigger file
+        for (int i = 0; i < scans.length; i++) {
+            assertTrue(scans[i] + ": " + Arrays.toString(at100k) + " -> " + Arrays.toString(at1m),
+                    at1m[i] < 3 * Math.max(at100k[i], 100_000));
+        }
+    }
+
+    // Add delivered jobs until the table holds `target` rows
+    private void fillTo(int target, long now) {
+        int total = target - DUE_RETRIES - PENDING_REPORTS;
+        while (rows < total) {
+            List<SmsJobEntity> batch = new ArrayList<>(INSERT_BATCH);
+            for (int i = 0; i < INSERT_BATCH && rows < total; i++, rows++) {
+                batch.add(job("bulk-" + rows, SmsJobStatus.DELIVERED, now - rows));
+            }
+            db.runInTransaction(() -> dao.insertJobs(batch));
+        }
+    }
+
+    // Median nanoseconds of each scan over RUNS runs
+    private long[] measure(long now) {
+        return new long[]{
+                median(() -> dao.getJobsReadyForRetry(now).size(), DUE_RETRIES),
+                median(() -> dao.getJobsWithPendingReports().size(), PENDING_REPORTS),
+                median(() -> dao.countJobsByStatus(SmsJobStatus.FAILED_RETRYING.getValue()), DUE_RETRIES)
+        };
+    }
+
+    private static long median(Supplier<Integer> scan, int expected) {
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            int found = scan.get();
+            times[i] = System.nanoTime() - start;
+            assertEquals(expected, found);
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    private static SmsJobEntity job(String jobId, SmsJobStatus status, long time) {
+        return new SmsJobEntity(jobId, "+15550100", "Your code is 1234", status.getValue(),
+                1, 3, time, time);
+    }
+}
@@ -0,0 +1,107 @@
+package com.smstool.gateway.data.repository;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smstool.gateway.data.db.AppDatabase;
+import com.smstool.gateway.data.db.SmsJobDao;
+import com.smstool.gateway.data.db.SmsJobEntity;
+import com.smstool.gateway.data.model.SmsJobStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Status updates per second through WriteBehindBuffer, one commit per update against group
+ * commits with the repository's window and group size. Each update is the conditional
+ * transitionStatus UPDATE that updateJobStatus submits, applied to a burst of queued jobs.
+ * Runs on a WAL database file like the app's, so each commit pays for its sync.
+ * Results are logged under the GroupCommitBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GroupCommitBenchmarkTest {
+    private static final String TAG = "GroupCommitBenchmark";
+    private static final String TEST_DB = "group-commit-benchmark";
+    private static final int UPDATES = 5000;
+    private static final int WARMUP_UPDATES = 500;
+    private static final long WINDOW_MILLIS = 5;
+    private static final int MAX_ENTRIES = 100;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private Context context;
+    private AppDatabase db;
+    private SmsJobDao dao;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .build();
+        dao = db.smsJobDao();
+    }
+
+    @After
+    public void tearDown() {
+        writer.shutdownNow();
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void groupCommitsBeatPerUpdateCommits() {
+        // maxEntries 1 flushes on every submit: one transaction per update
+        WriteBehindBuffer perUpdate = new WriteBehindBuffer(db, writer, WINDOW_MILLIS, 1);
+        WriteBehindBuffer grouped = new WriteBehindBuffer(db, writer, WINDOW_MILLIS, MAX_ENTRIES);
+        update(grouped, "warmup", WARMUP_UPDATES);
+
+        long perUpdateRate = update(perUpdate, "single", UPDATES);
+        long groupedRate = update(grouped, "group", UPDATES);
+        Log.i(TAG, "per-update commits: " + perUpdateRate + " updates/sec, group commits: "
+                + groupedRate + " updates/sec");
+
+        assertTrue("per update " + perUpdateRate + "/s, grouped " + groupedRate + "/s",
+                groupedRate > 5 * perUpdateRate);
+    }
+
+    // Move `count` new queued jobs to sending through the buffer; returns updates/sec
+    private long update(WriteBehindBuffer buffer, String prefix, int count) {
+        long now = System.currentTimeMillis();
+        List<SmsJobEntity> jobs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            jobs.add(new SmsJobEntity(prefix + "-" + i, "+15550100", "Your code is " + i,
+                    SmsJobStatus.QUEUED.getValue(), 0, 3, now, now));
+        }
+        db.runInTransaction(() -> dao.insertJobs(jobs));
+
+        List<String> fromStatuses = SmsJobStatus.SENDING.previousValues();
+        String status = SmsJobStatus.SENDING.getValue();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (SmsJobEntity job : jobs) {
+            results.add(buffer.submit(() -> dao.transitionStatus(job.jobId, fromStatuses, status,
+                    null, null, now) == 1));
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.join());
+        }
+        long elapsed = System.nanoTime() - start;
+        return count * 1_000_000_000L / elapsed;
+    }
+}
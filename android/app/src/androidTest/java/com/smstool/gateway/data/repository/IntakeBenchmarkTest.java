@@ -0,0 +1,96 @@
+package com.smstool.gateway.data.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smstool.gateway.data.db.AppDatabase;
+import com.smstool.gateway.data.db.SmsJobEntity;
+import com.smstool.gateway.data.model.SmsJobStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Intake throughput (jobs/sec) of insertNewJobs for batch sizes 1, 10, 100 and 1000.
+ * Batch size 1 is the baseline: one transaction per job, as before sms_job_batch.
+ * Runs on a WAL database file like the app's, so each commit pays for its sync.
+ * Results are logged under the IntakeBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IntakeBenchmarkTest {
+    private static final String TAG = "IntakeBenchmark";
+    private static final String TEST_DB = "intake-benchmark";
+    private static final int JOBS = 5000;         // per batch size
+    private static final int WARMUP_JOBS = 500;
+
+    private Context context;
+    private AppDatabase db;
+    private SmsJobRepository repository;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        db = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .build();
+        repository = new SmsJobRepository(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void jobsPerSecondByBatchSize() {
+        insert("warmup", WARMUP_JOBS, 100);
+
+        Map<Integer, Long> jobsPerSecond = new LinkedHashMap<>();
+        for (int batchSize : new int[]{1, 10, 100, 1000}) {
+            long start = System.nanoTime();
+            int created = insert("b" + batchSize, JOBS, batchSize);
+            long elapsed = System.nanoTime() - start;
+            assertEquals(JOBS, created);
+
+            long rate = JOBS * 1_000_000_000L / elapsed;
+            jobsPerSecond.put(batchSize, rate);
+            Log.i(TAG, "batch size " + batchSize + ": " + rate + " jobs/sec");
+        }
+
+        // One transaction per batch must beat one per job by a wide margin
+        assertTrue(jobsPerSecond.toString(), jobsPerSecond.get(100) > 5 * jobsPerSecond.get(1));
+        assertTrue(jobsPerSecond.toString(), jobsPerSecond.get(1000) > 5 * jobsPerSecond.get(1));
+    }
+
+    // Insert `count` new jobs in batches of `batchSize`; returns how many were created
+    private int insert(String prefix, int count, int batchSize) {
+        int created = 0;
+        long now = System.currentTimeMillis();
+        for (int start = 0; start < count; start += batchSize) {
+            List<SmsJobEntity> batch = new ArrayList<>(batchSize);
+            for (int i = start; i < Math.min(start + batchSize, count); i++) {
+                batch.add(new SmsJobEntity(prefix + "-" + i, "+15550100", "Your code is " + i,
+                        SmsJobStatus.QUEUED.getValue(), 0, 3, now, now));
+            }
+            created += repository.insertNewJobs(batch).size();
+        }
+        return created;
+    }
+}
@@ -0,0 +1,87 @@
+package com.smstool.gateway.data.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smstool.gateway.data.db.AppDatabase;
+import com.smstool.gateway.data.db.SmsJobEntity;
+import com.smstool.gateway.data.model.SmsJobStatus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Intake against an in-memory database: redelivered jobs must never be scheduled twice.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SmsJobRepositoryTest {
+    private static final int JOBS = 10_000;
+    private static final int BATCH = 200;  // the persist stage's batch size
+
+    private AppDatabase db;
+    private SmsJobRepository repository;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), AppDatabase.class).build();
+        repository = new SmsJobRepository(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void replayingTenThousandJobsTwiceSendsEachOnce() throws Exception {
+        Set<String> sent = ConcurrentHashMap.newKeySet();
+
+        // Two deliveries of the same jobs, racing each other like a replay after a reconnect
+        ExecutorService deliveries = Executors.newFixedThreadPool(2);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int delivery = 0; delivery < 2; delivery++) {
+            results.add(deliveries.submit(() -> deliver(sent)));
+        }
+        int sends = results.get(0).get() + results.get(1).get();
+        deliveries.shutdown();
+
+        assertEquals(JOBS, sends);
+        assertEquals(JOBS, sent.size());
+        assertEquals(JOBS, db.smsJobDao().countJobsByStatus(SmsJobStatus.QUEUED.getValue()));
+
+        // A third, late replay creates nothing
+        assertEquals(0, deliver(sent));
+    }
+
+    // Feed all jobs through insertNewJobs in persist-stage batches; returns the jobs it would send
+    private int deliver(Set<String> sent) {
+        int sends = 0;
+        long now = System.currentTimeMillis();
+        for (int start = 0; start < JOBS; start += BATCH) {
+            List<SmsJobEntity> batch = new ArrayList<>(BATCH);
+            for (int i = start; i < start + BATCH; i++) {
+                batch.add(new SmsJobEntity("job-" + i, "+15550100", "Your code is " + i,
+                        SmsJobStatus.QUEUED.getValue(), 0, 3, now, now));
+            }
+            for (SmsJobEntity job : repository.insertNewJobs(batch)) {
+                sent.add(job.jobId);
+                sends++;
+            }
+        }
+        return sends;
+    }
+}
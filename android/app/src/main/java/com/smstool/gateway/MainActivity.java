@@ -108,6 +108,12 @@ public class MainActivity extends AppCompatActivity {
                 }
             });
 
+    // Optional: lets the gateway enumerate SIMs and send on all of them
+    private final ActivityResultLauncher<String> requestPhoneStateLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted ->
+                    Log.i(TAG, "Phone state permission " + (isGranted ? "granted" : "denied")
+                            + (isGranted ? "" : ", sending on the default SIM only")));
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -337,6 +343,10 @@ public class MainActivity extends AppCompatActivity {
                 requestPermissionLauncher.launch(Manifest.permission.SEND_SMS);
             }
         }
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_PHONE_STATE)
+                != PackageManager.PERMISSION_GRANTED) {
+            requestPhoneStateLauncher.launch(Manifest.permission.READ_PHONE_STATE);
+        }
     }
 
     /**
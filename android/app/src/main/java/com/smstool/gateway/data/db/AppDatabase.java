@@ -2,20 +2,111 @@ package com.smstool.gateway.data.db;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.smstool.gateway.util.MeteredExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Room database for SMSTool.
  * Stores SMS jobs and activity log.
+ * Room exports the schema of the current version to app/schemas on every build; commit it with
+ * each version bump. 1.json is the v1 schema that shipped, which MigrationTest migrates from.
+ * Every version bump needs a migration, never a destructive fallback.
+ * Writes go through a single writer thread and reads through a small pool; in WAL mode readers
+ * see the last commit and never wait for the writer or for each other.
  */
-@Database(entities = {SmsJobEntity.class, EventLogEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {SmsJobEntity.class, SmsJobPartEntity.class, EventLogEntity.class},
+        version = 6, exportSchema = true)
 public abstract class AppDatabase extends RoomDatabase {
+    private static final int READER_THREADS = 3;  // SQLite on Android keeps up to 4 WAL read connections
+
+    private static final Executor WRITE_EXECUTOR =
+            new MeteredExecutor("db_write", Executors.newSingleThreadExecutor());
+    private static final Executor READ_EXECUTOR =
+            new MeteredExecutor("db_read", Executors.newFixedThreadPool(READER_THREADS));
+
     private static volatile AppDatabase instance;
 
+    /**
+     * v2: record the SIM subscription each job was sent on.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE sms_jobs ADD COLUMN subscriptionId INTEGER");
+        }
+    };
+
+    /**
+     * v3: job priority, indexed for priority-ordered scans of a status.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE sms_jobs ADD COLUMN priority INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_sms_jobs_status_priority_createdAt "
+                    + "ON sms_jobs (status ASC, priority DESC, createdAt ASC)");
+        }
+    };
+
+    /**
+     * v4: body encoding and segment count, computed at intake.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE sms_jobs ADD COLUMN segmentCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE sms_jobs ADD COLUMN encoding TEXT");
+        }
+    };
+
+    /**
+     * v5: per-part tracking of multipart jobs.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS sms_job_parts ("
+                    + "jobId TEXT NOT NULL, partIndex INTEGER NOT NULL, status TEXT, "
+                    + "errorCode INTEGER, updatedAt INTEGER NOT NULL, "
+                    + "PRIMARY KEY(jobId, partIndex), "
+                    + "FOREIGN KEY(jobId) REFERENCES sms_jobs(jobId) ON UPDATE NO ACTION ON DELETE CASCADE)");
+        }
+    };
+
+    /**
+     * v6: indices for the retry, pending-report and newest-first scans.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_sms_jobs_status_nextRetryAt "
+                    + "ON sms_jobs (status, nextRetryAt)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_sms_jobs_pendingReport_updatedAt "
+                    + "ON sms_jobs (pendingReport, updatedAt)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_sms_jobs_createdAt ON sms_jobs (createdAt)");
+        }
+    };
+
+    /**
+     * All migrations, oldest first (shared with migration tests).
+     */
+    static final Migration[] MIGRATIONS = {
+            MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6
+    };
+
     public abstract SmsJobDao smsJobDao();
 
+    public abstract SmsJobPartDao smsJobPartDao();
+
     public abstract EventLogDao eventLogDao();
 
     /**
@@ -29,13 +120,31 @@ public abstract class AppDatabase extends RoomDatabase {
                             context.getApplicationContext(),
                             AppDatabase.class,
                             "smstool.db"
-                    ).build();
+                    ).addMigrations(MIGRATIONS)
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .setQueryExecutor(READ_EXECUTOR)
+                            .setTransactionExecutor(WRITE_EXECUTOR)
+                            .build();
                 }
             }
         }
         return instance;
     }
 
+    /**
+     * Single thread for all writes, so they commit in submission order.
+     */
+    public static Executor writeExecutor() {
+        return WRITE_EXECUTOR;
+    }
+
+    /**
+     * Pool for reads; also used by Room for LiveData queries.
+     */
+    public static Executor readExecutor() {
+        return READ_EXECUTOR;
+    }
+
     /**
      * Close the database (for testing).
      */
@@ -1,6 +1,5 @@
 package com.smstool.gateway.data.db;
 
-import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
@@ -16,22 +15,28 @@ public interface EventLogDao {
     long insertEvent(EventLogEntity event);
 
     /**
-     * Get the most recent N log entries (for displaying in MainActivity).
+     * Insert a batch of events whose ids were assigned in memory.
      */
-    @Query("SELECT * FROM event_log ORDER BY timestamp DESC LIMIT :limit")
-    LiveData<List<EventLogEntity>> getRecentEventsLive(int limit);
+    @Insert
+    void insertEvents(List<EventLogEntity> events);
 
     /**
-     * Get recent events synchronously (for testing).
+     * Get the most recent N log entries (to seed the in-memory log on startup).
      */
-    @Query("SELECT * FROM event_log ORDER BY timestamp DESC LIMIT :limit")
+    @Query("SELECT * FROM event_log ORDER BY id DESC LIMIT :limit")
     List<EventLogEntity> getRecentEvents(int limit);
 
     /**
-     * Clear old log entries (keep last 500).
+     * Highest id in use, or null if the log is empty.
+     */
+    @Query("SELECT MAX(id) FROM event_log")
+    Long getMaxId();
+
+    /**
+     * Trim old log entries by id (a primary key range delete).
      */
-    @Query("DELETE FROM event_log WHERE id NOT IN (SELECT id FROM event_log ORDER BY timestamp DESC LIMIT 500)")
-    void cleanupOldEvents();
+    @Query("DELETE FROM event_log WHERE id < :cutoffId")
+    int deleteEventsBefore(long cutoffId);
 
     /**
      * Delete all events (for testing).
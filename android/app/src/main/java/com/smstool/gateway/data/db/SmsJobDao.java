@@ -4,6 +4,7 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
@@ -14,9 +15,20 @@ import java.util.List;
  */
 @Dao
 public interface SmsJobDao {
-    @Insert
+    /**
+     * Insert a job unless one with the same jobId exists.
+     * Returns the new rowId, or -1 if the job was a duplicate.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
     long insertJob(SmsJobEntity job);
 
+    /**
+     * Insert a batch of jobs, skipping duplicates (call inside a transaction for a single commit).
+     * Returns one rowId per job, -1 for each duplicate.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    List<Long> insertJobs(List<SmsJobEntity> jobs);
+
     @Update
     void updateJob(SmsJobEntity job);
 
@@ -26,6 +38,45 @@ public interface SmsJobDao {
     @Query("SELECT * FROM sms_jobs WHERE jobId = :jobId")
     SmsJobEntity getJobById(String jobId);
 
+    /**
+     * Move a job to a new status if it is currently in one of `fromStatuses`
+     * (see SmsJobStatus.previousValues()). Stamps sentAt/deliveredAt on those transitions.
+     * Returns 1 if the job moved, 0 if the transition was not legal.
+     */
+    @Query("UPDATE sms_jobs SET status = :status, errorCode = :errorCode, errorMessage = :errorMessage, "
+            + "updatedAt = :nowMillis, "
+            + "sentAt = CASE WHEN :status = 'sent' THEN :nowMillis ELSE sentAt END, "
+            + "deliveredAt = CASE WHEN :status = 'delivered' THEN :nowMillis ELSE deliveredAt END "
+            + "WHERE jobId = :jobId AND status IN (:fromStatuses)")
+    int transitionStatus(String jobId, List<String> fromStatuses, String status, Integer errorCode,
+                         String errorMessage, long nowMillis);
+
+    /**
+     * Move a job to failed_retrying with its next attempt number and due time.
+     * Returns 1 if the job moved, 0 if the transition was not legal.
+     */
+    @Query("UPDATE sms_jobs SET status = 'failed_retrying', attempts = :attempts, "
+            + "nextRetryAt = :nextRetryAt, updatedAt = :nowMillis "
+            + "WHERE jobId = :jobId AND status IN (:fromStatuses)")
+    int transitionToRetry(String jobId, List<String> fromStatuses, int attempts, long nextRetryAt,
+                          long nowMillis);
+
+    /**
+     * Mark a job as handed to SmsManager on the given SIM, for the attempt that was dispatched
+     * from `fromStatus` with `attempts` earlier attempts.
+     * Returns 0 if the job has already moved on (e.g. its SMS_SENT result was recorded first, or
+     * the attempt already failed and was rescheduled).
+     */
+    @Query("UPDATE sms_jobs SET status = 'sending', subscriptionId = :subscriptionId, updatedAt = :nowMillis "
+            + "WHERE jobId = :jobId AND status = :fromStatus AND attempts = :attempts")
+    int markSending(String jobId, String fromStatus, int attempts, int subscriptionId, long nowMillis);
+
+    /**
+     * Set or clear a job's pending report flag.
+     */
+    @Query("UPDATE sms_jobs SET pendingReport = :pending WHERE jobId = :jobId")
+    int setPendingReport(String jobId, boolean pending);
+
     /**
      * Get all jobs with a specific status.
      */
@@ -34,16 +85,43 @@ public interface SmsJobDao {
 
     /**
      * Get jobs that need to be retried (failed_retrying status and nextRetryAt <= now).
+     * Served by the (status, nextRetryAt) index; only the due rows are sorted.
      */
-    @Query("SELECT * FROM sms_jobs WHERE status = 'failed_retrying' AND nextRetryAt <= :nowMillis ORDER BY nextRetryAt ASC")
+    @Query("SELECT * FROM sms_jobs WHERE status = 'failed_retrying' AND nextRetryAt <= :nowMillis ORDER BY priority DESC, nextRetryAt ASC")
     List<SmsJobEntity> getJobsReadyForRetry(long nowMillis);
 
+    /**
+     * Get all jobs waiting for a retry, due or not (to load the retry scheduler).
+     */
+    @Query("SELECT * FROM sms_jobs WHERE status = 'failed_retrying'")
+    List<SmsJobEntity> getJobsAwaitingRetry();
+
+    /**
+     * Get jobs that were received but never handed to SmsManager, most urgent first.
+     * Served by the (status, priority, createdAt) index.
+     */
+    @Query("SELECT * FROM sms_jobs WHERE status = 'queued' ORDER BY priority DESC, createdAt ASC")
+    List<SmsJobEntity> getQueuedJobs();
+
     /**
      * Get jobs with pending status reports (status update couldn't be sent to server).
+     * Served by the (pendingReport, updatedAt) index, already in order.
      */
     @Query("SELECT * FROM sms_jobs WHERE pendingReport = 1 ORDER BY updatedAt ASC")
     List<SmsJobEntity> getJobsWithPendingReports();
 
+    /**
+     * Flag several jobs as having a pending status report.
+     */
+    @Query("UPDATE sms_jobs SET pendingReport = 1 WHERE jobId IN (:jobIds)")
+    int markPendingReports(List<String> jobIds);
+
+    /**
+     * Clear a job's pending report flag, but only if the job has not changed since it was reported.
+     */
+    @Query("UPDATE sms_jobs SET pendingReport = 0 WHERE jobId = :jobId AND updatedAt = :updatedAt")
+    int clearPendingReport(String jobId, long updatedAt);
+
     /**
      * Get all jobs ordered by creation time (newest first).
      * Observed as LiveData for UI updates.
@@ -1,14 +1,26 @@
 package com.smstool.gateway.data.db;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
  * Room entity representing an SMS job in the local queue.
  * Persisted to survive app crashes and process death.
+ * Indices back the scans run while the queue is large: queued jobs by priority, due retries,
+ * pending reports, and the newest-first job list.
  */
-@Entity(tableName = "sms_jobs")
+@Entity(tableName = "sms_jobs",
+        indices = {
+                @Index(value = {"status", "priority", "createdAt"},
+                        orders = {Index.Order.ASC, Index.Order.DESC, Index.Order.ASC}),
+                @Index(value = {"status", "nextRetryAt"}),
+                @Index(value = {"pendingReport", "updatedAt"}),
+                @Index(value = {"createdAt"})
+        })
 public class SmsJobEntity {
     @PrimaryKey
     @NonNull
@@ -18,6 +30,9 @@ public class SmsJobEntity {
     public String body;
     public String status;  // queued, sending, sent, delivered, failed_retrying, failed_permanent
 
+    @ColumnInfo(defaultValue = "0")
+    public int priority;   // higher is more urgent, 0 for normal traffic
+
     public int attempts;
     public int maxRetries;
 
@@ -33,6 +48,15 @@ public class SmsJobEntity {
     public Long nextRetryAt;  // epoch millis, when to retry next (nullable)
     public boolean pendingReport; // true if status update couldn't be sent to server
 
+    public Integer subscriptionId; // SIM subscription the job was last sent on (nullable)
+
+    @ColumnInfo(defaultValue = "0")
+    public int segmentCount;  // SMS segments needed for the body, 0 if not computed yet
+    public String encoding;   // gsm7 or ucs2 (nullable until computed)
+
+    @Ignore
+    public int[] partsToSend; // multipart retry: indices of the parts to resend (null = all parts)
+
     // Constructor
     public SmsJobEntity(String jobId, String toNumber, String body, String status,
                         int attempts, int maxRetries, long createdAt, long updatedAt) {
@@ -0,0 +1,45 @@
+package com.smstool.gateway.data.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Data Access Object for the parts of multipart SMS jobs.
+ */
+@Dao
+public interface SmsJobPartDao {
+    /**
+     * Insert parts about to be sent, resetting any earlier attempt of the same parts.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertParts(List<SmsJobPartEntity> parts);
+
+    /**
+     * Move a part from one status to another.
+     * Returns 0 if the part was not in the expected status (e.g. a stale or repeated broadcast).
+     */
+    @Query("UPDATE sms_job_parts SET status = :toStatus, errorCode = :errorCode, updatedAt = :updatedAt "
+            + "WHERE jobId = :jobId AND partIndex = :partIndex AND status = :fromStatus")
+    int updatePartStatus(String jobId, int partIndex, String fromStatus, String toStatus,
+                         Integer errorCode, long updatedAt);
+
+    /**
+     * Mark every part of a job still waiting for its SMS_SENT result as failed.
+     */
+    @Query("UPDATE sms_job_parts SET status = 'failed', errorCode = :errorCode, updatedAt = :updatedAt "
+            + "WHERE jobId = :jobId AND status = 'sending'")
+    int failSendingParts(String jobId, Integer errorCode, long updatedAt);
+
+    @Query("SELECT * FROM sms_job_parts WHERE jobId = :jobId ORDER BY partIndex")
+    List<SmsJobPartEntity> getParts(String jobId);
+
+    /**
+     * Get the indices of a job's parts that failed to send.
+     */
+    @Query("SELECT partIndex FROM sms_job_parts WHERE jobId = :jobId AND status = 'failed' ORDER BY partIndex")
+    List<Integer> getFailedPartIndices(String jobId);
+}
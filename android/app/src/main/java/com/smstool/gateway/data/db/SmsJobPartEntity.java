@@ -0,0 +1,38 @@
+package com.smstool.gateway.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+/**
+ * Room entity tracking one part of a multipart SMS job.
+ * Lets a job be marked sent/delivered only once every part has reported,
+ * and lets a retry resend just the parts that failed.
+ */
+@Entity(tableName = "sms_job_parts",
+        primaryKeys = {"jobId", "partIndex"},
+        foreignKeys = @ForeignKey(entity = SmsJobEntity.class,
+                parentColumns = "jobId",
+                childColumns = "jobId",
+                onDelete = ForeignKey.CASCADE))
+public class SmsJobPartEntity {
+    public static final String SENDING = "sending";
+    public static final String SENT = "sent";
+    public static final String DELIVERED = "delivered";
+    public static final String FAILED = "failed";
+
+    @NonNull
+    public String jobId;
+    public int partIndex;
+
+    public String status;        // sending, sent, delivered, failed
+    public Integer errorCode;    // nullable, SmsManager result code of the last failure
+    public long updatedAt;       // epoch millis
+
+    public SmsJobPartEntity(@NonNull String jobId, int partIndex, String status, long updatedAt) {
+        this.jobId = jobId;
+        this.partIndex = partIndex;
+        this.status = status;
+        this.updatedAt = updatedAt;
+    }
+}
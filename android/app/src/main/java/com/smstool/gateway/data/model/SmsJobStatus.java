@@ -1,8 +1,18 @@
 package com.smstool.gateway.data.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Enum representing SMS job status.
  * Mirrors backend SmsJobStatus enum.
+ * Status only moves forward along the legal transitions below; the database updates are
+ * conditional on them, so a late or repeated broadcast can never move a job backwards.
  */
 public enum SmsJobStatus {
     QUEUED("queued"),
@@ -14,6 +24,30 @@ public enum SmsJobStatus {
 
     private final String value;
 
+    // Legal transitions. SENDING is recorded asynchronously, so a job may skip it.
+    private static final Map<SmsJobStatus, Set<SmsJobStatus>> NEXT = new EnumMap<>(SmsJobStatus.class);
+    // Inverse of NEXT, as status values for `status IN (...)` conditions
+    private static final Map<SmsJobStatus, List<String>> PREVIOUS = new EnumMap<>(SmsJobStatus.class);
+
+    static {
+        NEXT.put(QUEUED, EnumSet.of(SENDING, SENT, DELIVERED, FAILED_RETRYING, FAILED_PERMANENT));
+        NEXT.put(SENDING, EnumSet.of(SENT, DELIVERED, FAILED_RETRYING, FAILED_PERMANENT));
+        NEXT.put(SENT, EnumSet.of(DELIVERED));
+        NEXT.put(DELIVERED, EnumSet.noneOf(SmsJobStatus.class));
+        NEXT.put(FAILED_RETRYING, EnumSet.of(SENDING, SENT, DELIVERED, FAILED_RETRYING, FAILED_PERMANENT));
+        NEXT.put(FAILED_PERMANENT, EnumSet.noneOf(SmsJobStatus.class));
+
+        for (SmsJobStatus target : values()) {
+            List<String> sources = new ArrayList<>();
+            for (SmsJobStatus source : values()) {
+                if (NEXT.get(source).contains(target)) {
+                    sources.add(source.value);
+                }
+            }
+            PREVIOUS.put(target, Collections.unmodifiableList(sources));
+        }
+    }
+
     SmsJobStatus(String value) {
         this.value = value;
     }
@@ -34,6 +68,20 @@ public enum SmsJobStatus {
         throw new IllegalArgumentException("Unknown status: " + value);
     }
 
+    /**
+     * Check whether a job may move from this status to the given one.
+     */
+    public boolean canTransitionTo(SmsJobStatus next) {
+        return NEXT.get(this).contains(next);
+    }
+
+    /**
+     * Status values a job may be in to move to this status.
+     */
+    public List<String> previousValues() {
+        return PREVIOUS.get(this);
+    }
+
     /**
      * Check if job has finished (no more retries will happen).
      */
@@ -16,6 +16,16 @@ public class PrefsManager {
     private static final String KEY_GATEWAY_URL = "gateway_url";
     private static final String KEY_DEVICE_ID = "device_id";
     private static final String KEY_SERVICE_RUNNING = "service_running";
+    private static final String KEY_LAST_JOB_SEQ = "last_job_seq";
+    private static final String KEY_STATUS_SEQ_RESERVED = "status_seq_reserved";
+    private static final String KEY_INTENT_ID_RESERVED = "intent_id_reserved";
+    private static final String KEY_SEND_BURST = "send_burst";
+    private static final String KEY_SEND_RATE_PER_MINUTE = "send_rate_per_minute";
+    private static final String KEY_SEND_WINDOW = "send_window";
+
+    private static final int DEFAULT_SEND_BURST = 10;
+    private static final int DEFAULT_SEND_RATE_PER_MINUTE = 30;
+    private static final int DEFAULT_SEND_WINDOW = 8;
 
     private final SharedPreferences prefs;
 
@@ -80,6 +90,91 @@ public class PrefsManager {
         Log.i(TAG, "Service running flag set to: " + running);
     }
 
+    /**
+     * Get the highest server sequence number of an sms_job stored locally (0 if none).
+     */
+    public long getLastJobSeq() {
+        return prefs.getLong(KEY_LAST_JOB_SEQ, 0);
+    }
+
+    /**
+     * Record that all jobs up to this sequence number are stored locally.
+     * Never moves backwards.
+     */
+    public synchronized void advanceLastJobSeq(long seq) {
+        if (seq > getLastJobSeq()) {
+            prefs.edit().putLong(KEY_LAST_JOB_SEQ, seq).apply();
+        }
+    }
+
+    /**
+     * Get the upper bound of the reserved block of status frame sequence numbers.
+     */
+    public long getStatusSeqReserved() {
+        return prefs.getLong(KEY_STATUS_SEQ_RESERVED, 0);
+    }
+
+    /**
+     * Reserve status frame sequence numbers up to this value.
+     */
+    public void setStatusSeqReserved(long seq) {
+        prefs.edit().putLong(KEY_STATUS_SEQ_RESERVED, seq).apply();
+    }
+
+    /**
+     * Get the upper bound of the reserved block of PendingIntent request codes.
+     */
+    public long getIntentIdReserved() {
+        return prefs.getLong(KEY_INTENT_ID_RESERVED, 0);
+    }
+
+    /**
+     * Reserve PendingIntent request codes up to this value.
+     */
+    public void setIntentIdReserved(long id) {
+        prefs.edit().putLong(KEY_INTENT_ID_RESERVED, id).apply();
+    }
+
+    /**
+     * Get the number of SMS a SIM may send back-to-back before pacing kicks in.
+     */
+    public int getSendBurst() {
+        return prefs.getInt(KEY_SEND_BURST, DEFAULT_SEND_BURST);
+    }
+
+    /**
+     * Get the sustained per-SIM send rate.
+     */
+    public int getSendRatePerMinute() {
+        return prefs.getInt(KEY_SEND_RATE_PER_MINUTE, DEFAULT_SEND_RATE_PER_MINUTE);
+    }
+
+    /**
+     * Set the per-SIM send pacing (as pushed by the server).
+     */
+    public void setSendPacing(int burst, int ratePerMinute) {
+        prefs.edit()
+                .putInt(KEY_SEND_BURST, burst)
+                .putInt(KEY_SEND_RATE_PER_MINUTE, ratePerMinute)
+                .apply();
+        Log.i(TAG, "Send pacing set to " + ratePerMinute + "/min, burst " + burst);
+    }
+
+    /**
+     * Get the maximum number of sends that may await their SMS_SENT broadcast at once.
+     */
+    public int getSendWindow() {
+        return prefs.getInt(KEY_SEND_WINDOW, DEFAULT_SEND_WINDOW);
+    }
+
+    /**
+     * Set the maximum send window (as pushed by the server).
+     */
+    public void setSendWindow(int window) {
+        prefs.edit().putInt(KEY_SEND_WINDOW, window).apply();
+        Log.i(TAG, "Send window set to " + window);
+    }
+
     /**
      * Check if all required settings are configured.
      */
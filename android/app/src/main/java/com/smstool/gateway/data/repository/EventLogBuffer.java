@@ -0,0 +1,190 @@
+package com.smstool.gateway.data.repository;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.smstool.gateway.data.db.AppDatabase;
+import com.smstool.gateway.data.db.EventLogDao;
+import com.smstool.gateway.data.db.EventLogEntity;
+import com.smstool.gateway.util.GatewayMetrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory activity log in front of the event_log table.
+ * add() never blocks: it claims a slot in a lock-free ring and stores the event. A flusher
+ * thread drains the ring every flush interval, assigns ids, publishes the newest events to the
+ * UI straight from memory and hands the batch to the database writer as one transaction, so
+ * logging costs job writes at most one short transaction per interval. Old rows are trimmed on
+ * a timer with an id threshold. If the flusher falls a whole ring behind, the oldest unflushed
+ * events are dropped.
+ */
+class EventLogBuffer {
+    private static final String TAG = "EventLogBuffer";
+    private static final int CAPACITY = 1024;  // power of two
+
+    private final AppDatabase db;
+    private final EventLogDao dao;
+    private final Executor databaseWriter;
+    private final int keepEvents;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+    private final AtomicReferenceArray<Slot> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong head = new AtomicLong();  // next sequence number to claim
+    private volatile long tail;                        // next sequence number to flush
+
+    // Flusher thread only
+    private final ArrayDeque<EventLogEntity> recent = new ArrayDeque<>();  // newest first
+    private long lastId = -1;                                              // -1 until loaded
+
+    private final Map<Integer, MutableLiveData<List<EventLogEntity>>> views = new ConcurrentHashMap<>();
+    private final AtomicLong droppedCounter = GatewayMetrics.counter("events.dropped");
+
+    EventLogBuffer(AppDatabase db, Executor databaseWriter, long flushIntervalMillis,
+                   long trimIntervalMillis, int keepEvents) {
+        this.db = db;
+        this.dao = db.eventLogDao();
+        this.databaseWriter = databaseWriter;
+        this.keepEvents = keepEvents;
+        GatewayMetrics.gauge("events.unflushed", () -> head.get() - tail);
+
+        flusher.execute(this::load);
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::trim, trimIntervalMillis, trimIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append an event. Safe from any thread; never blocks.
+     */
+    void add(EventLogEntity event) {
+        long seq = head.getAndIncrement();
+        ring.set((int) (seq & (CAPACITY - 1)), new Slot(seq, event));
+    }
+
+    /**
+     * The newest `limit` events, newest first, updated after every flush.
+     */
+    LiveData<List<EventLogEntity>> recentEvents(int limit) {
+        MutableLiveData<List<EventLogEntity>> view =
+                views.computeIfAbsent(limit, key -> new MutableLiveData<>());
+        flusher.execute(this::publish);
+        return view;
+    }
+
+    /**
+     * Delete all events, in memory and in the database.
+     */
+    void clear() {
+        flusher.execute(() -> {
+            flush();
+            databaseWriter.execute(dao::deleteAll);  // after the insert flush() queued
+            recent.clear();
+            publish();
+        });
+    }
+
+    // Pick up the id sequence and the newest events of earlier runs
+    private void load() {
+        try {
+            Long maxId = dao.getMaxId();
+            lastId = maxId != null ? maxId : 0;
+            recent.addAll(dao.getRecentEvents(keepEvents));
+            publish();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to load event log", e);
+            lastId = 0;
+        }
+    }
+
+    private void flush() {
+        List<EventLogEntity> batch = new ArrayList<>();
+        long end = head.get();
+        long next = tail;
+        if (end - next > CAPACITY) {
+            droppedCounter.addAndGet(end - CAPACITY - next);
+            next = end - CAPACITY;
+        }
+        while (next < end) {
+            Slot slot = ring.get((int) (next & (CAPACITY - 1)));
+            if (slot == null || slot.seq < next) {
+                break;  // claimed but not stored yet
+            }
+            if (slot.seq > next) {
+                droppedCounter.incrementAndGet();  // overwritten by a newer lap
+            } else {
+                slot.event.id = ++lastId;
+                batch.add(slot.event);
+            }
+            next++;
+        }
+        tail = next;
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        databaseWriter.execute(() -> {
+            try {
+                db.runInTransaction(() -> dao.insertEvents(batch));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to write " + batch.size() + " events", e);
+            }
+        });
+        for (EventLogEntity event : batch) {
+            recent.addFirst(event);
+        }
+        while (recent.size() > keepEvents) {
+            recent.removeLast();
+        }
+        publish();
+    }
+
+    private void trim() {
+        if (lastId <= keepEvents) {
+            return;
+        }
+        long cutoff = lastId - keepEvents + 1;
+        databaseWriter.execute(() -> {
+            try {
+                dao.deleteEventsBefore(cutoff);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to trim event log", e);
+            }
+        });
+    }
+
+    private void publish() {
+        for (Map.Entry<Integer, MutableLiveData<List<EventLogEntity>>> view : views.entrySet()) {
+            List<EventLogEntity> events = new ArrayList<>(Math.min(view.getKey(), recent.size()));
+            Iterator<EventLogEntity> iterator = recent.iterator();
+            while (events.size() < view.getKey() && iterator.hasNext()) {
+                events.add(iterator.next());
+            }
+            view.getValue().postValue(events);
+        }
+    }
+
+    private static class Slot {
+        final long seq;
+        final EventLogEntity event;
+
+        Slot(long seq, EventLogEntity event) {
+            this.seq = seq;
+            this.event = event;
+        }
+    }
+}
@@ -6,138 +6,314 @@ import android.util.Log;
 import androidx.lifecycle.LiveData;
 
 import com.smstool.gateway.data.db.AppDatabase;
-import com.smstool.gateway.data.db.EventLogDao;
 import com.smstool.gateway.data.db.EventLogEntity;
 import com.smstool.gateway.data.db.SmsJobDao;
 import com.smstool.gateway.data.db.SmsJobEntity;
+import com.smstool.gateway.data.db.SmsJobPartDao;
+import com.smstool.gateway.data.db.SmsJobPartEntity;
 import com.smstool.gateway.data.model.SmsJobStatus;
+import com.smstool.gateway.util.GatewayMetrics;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Repository layer providing high-level access to SMS job data and business logic.
- * All database operations run on a background thread.
+ * All database operations run on a background thread: writes on the single writer, reads on
+ * the reader pool, so lookups never queue behind a burst of inserts. The synchronous batch
+ * methods are for pipeline stages: they run on the writer too and block the calling stage
+ * until their transaction has committed.
  */
 public class SmsJobRepository {
     private static final String TAG = "SmsJobRepository";
-    private static final Executor DATABASE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Executor WRITE_EXECUTOR = AppDatabase.writeExecutor();
+    private static final Executor READ_EXECUTOR = AppDatabase.readExecutor();
+    private static final long GROUP_COMMIT_WINDOW = 5;       // milliseconds
+    private static final int GROUP_COMMIT_MAX_ENTRIES = 100;
+    private static final long EVENT_FLUSH_INTERVAL = 250;    // milliseconds
+    private static final long EVENT_TRIM_INTERVAL = 60000;   // 1 minute
+    private static final int EVENT_LOG_KEEP = 500;
+    private static WriteBehindBuffer writeBehind;            // shared by all repositories, like the executors
+    private static EventLogBuffer eventLog;
 
+    private final AppDatabase db;
     private final SmsJobDao jobDao;
-    private final EventLogDao eventLogDao;
+    private final SmsJobPartDao partDao;
 
     public SmsJobRepository(Context context) {
-        AppDatabase db = AppDatabase.getInstance(context);
-        this.jobDao = db.smsJobDao();
-        this.eventLogDao = db.eventLogDao();
+        this(AppDatabase.getInstance(context));
     }
 
     /**
-     * Create a new SMS job in the local queue.
+     * Repository over a given database (tests use an in-memory one). The group-commit and
+     * event-log buffers are shared and stay bound to the first repository's database.
      */
-    public void createJob(String toNumber, String body, int maxRetries, Runnable onComplete) {
-        DATABASE_EXECUTOR.execute(() -> {
-            String jobId = UUID.randomUUID().toString();
-            long now = System.currentTimeMillis();
+    SmsJobRepository(AppDatabase db) {
+        this.db = db;
+        this.jobDao = db.smsJobDao();
+        this.partDao = db.smsJobPartDao();
+        synchronized (SmsJobRepository.class) {
+            if (writeBehind == null) {
+                writeBehind = new WriteBehindBuffer(db, WRITE_EXECUTOR,
+                        GROUP_COMMIT_WINDOW, GROUP_COMMIT_MAX_ENTRIES);
+                eventLog = new EventLogBuffer(db, WRITE_EXECUTOR,
+                        EVENT_FLUSH_INTERVAL, EVENT_TRIM_INTERVAL, EVENT_LOG_KEEP);
+            }
+        }
+    }
 
-            SmsJobEntity job = new SmsJobEntity(
-                    jobId,
-                    toNumber,
-                    body,
-                    SmsJobStatus.QUEUED.getValue(),
-                    0,  // attempts
-                    maxRetries,
-                    now,
-                    now
-            );
+    /**
+     * Create SMS jobs in the local queue in a single transaction, keyed by the server's job_id.
+     * Jobs that already exist (redeliveries) are skipped, so duplicates are never sent twice.
+     * Waits for the writer and returns only the newly inserted jobs.
+     */
+    public List<SmsJobEntity> insertNewJobs(List<SmsJobEntity> jobs) {
+        List<SmsJobEntity> created = new ArrayList<>(jobs.size());
+        writeAndWait(() -> db.runInTransaction(() -> {
+            List<Long> rowIds = jobDao.insertJobs(jobs);
+            for (int i = 0; i < jobs.size(); i++) {
+                if (rowIds.get(i) != -1) {
+                    created.add(jobs.get(i));
+                }
+            }
+        }));
 
-            jobDao.insertJob(job);
-            logEvent("INFO", "Created job " + jobId + " to " + toNumber);
+        int duplicates = jobs.size() - created.size();
+        if (duplicates > 0) {
+            GatewayMetrics.counter("jobs.duplicates_ignored").addAndGet(duplicates);
+        }
+        logEvent("INFO", "Created " + created.size() + " job(s)"
+                + (duplicates > 0 ? " (" + duplicates + " duplicates ignored)" : ""));
+        return created;
+    }
 
-            if (onComplete != null) {
-                onComplete.run();
+    /**
+     * Mark jobs that were just handed to SmsManager as sending, in a single transaction.
+     * Each job must still carry the status and attempt count it was dispatched with: only a job
+     * the database still holds in that state moves, so an attempt whose SMS_SENT result (or a
+     * failure and rescheduled retry) was already recorded is left alone.
+     * Waits for the writer and returns the jobs that moved.
+     */
+    public List<SmsJobEntity> markSending(List<SmsJobEntity> jobs) {
+        List<SmsJobEntity> updated = new ArrayList<>(jobs.size());
+        long now = System.currentTimeMillis();
+        writeAndWait(() -> db.runInTransaction(() -> {
+            for (SmsJobEntity job : jobs) {
+                if (jobDao.markSending(job.jobId, job.status, job.attempts, job.subscriptionId, now) == 1) {
+                    updated.add(job);
+                }
             }
-        });
+        }));
+        return updated;
+    }
+
+    // Run a write on the database writer and block until it is done, rethrowing its failure
+    private static void writeAndWait(Runnable write) {
+        CompletableFuture.runAsync(write, WRITE_EXECUTOR).join();
     }
 
     /**
      * Get a job by ID.
      */
     public void getJob(String jobId, JobCallback callback) {
-        DATABASE_EXECUTOR.execute(() -> {
+        READ_EXECUTOR.execute(() -> {
             SmsJobEntity job = jobDao.getJobById(jobId);
             callback.onJobRetrieved(job);
         });
     }
 
     /**
-     * Update a job's status.
+     * Get a job for a retry. For a multipart job whose earlier attempt failed only in some parts,
+     * partsToSend is set to just those parts.
      */
-    public void updateJobStatus(String jobId, SmsJobStatus newStatus, Integer errorCode,
-                                String errorMessage, Runnable onComplete) {
-        DATABASE_EXECUTOR.execute(() -> {
+    public void getJobForRetry(String jobId, JobCallback callback) {
+        READ_EXECUTOR.execute(() -> {
             SmsJobEntity job = jobDao.getJobById(jobId);
             if (job != null) {
-                job.status = newStatus.getValue();
-                job.updatedAt = System.currentTimeMillis();
-                job.errorCode = errorCode;
-                job.errorMessage = errorMessage;
-
-                if (newStatus == SmsJobStatus.SENT) {
-                    job.sentAt = System.currentTimeMillis();
-                } else if (newStatus == SmsJobStatus.DELIVERED) {
-                    job.deliveredAt = System.currentTimeMillis();
+                List<Integer> failed = partDao.getFailedPartIndices(jobId);
+                if (!failed.isEmpty()) {
+                    job.partsToSend = new int[failed.size()];
+                    for (int i = 0; i < failed.size(); i++) {
+                        job.partsToSend[i] = failed.get(i);
+                    }
                 }
+            }
+            callback.onJobRetrieved(job);
+        });
+    }
 
-                jobDao.updateJob(job);
-                logEvent("INFO", "Job " + jobId + " status -> " + newStatus.getValue());
+    /**
+     * Record the parts of a multipart job that are about to be sent.
+     */
+    public void createParts(String jobId, int[] partIndices, Runnable onComplete) {
+        WRITE_EXECUTOR.execute(() -> {
+            long now = System.currentTimeMillis();
+            List<SmsJobPartEntity> parts = new ArrayList<>(partIndices.length);
+            for (int partIndex : partIndices) {
+                parts.add(new SmsJobPartEntity(jobId, partIndex, SmsJobPartEntity.SENDING, now));
+            }
+            partDao.insertParts(parts);
 
-                if (onComplete != null) {
-                    onComplete.run();
-                }
+            if (onComplete != null) {
+                onComplete.run();
             }
         });
     }
 
     /**
-     * Mark a job for retry.
+     * Record the SMS_SENT result of one part and work out what it means for the whole job.
      */
-    public void scheduleRetry(String jobId, int attemptNumber, long delayMillis, Runnable onComplete) {
-        DATABASE_EXECUTOR.execute(() -> {
-            SmsJobEntity job = jobDao.getJobById(jobId);
-            if (job != null) {
-                job.status = SmsJobStatus.FAILED_RETRYING.getValue();
-                job.attempts = attemptNumber;
-                job.nextRetryAt = System.currentTimeMillis() + delayMillis;
-                job.updatedAt = System.currentTimeMillis();
+    public void recordPartSent(String jobId, int partIndex, boolean success, Integer errorCode,
+                               PartsCallback callback) {
+        WRITE_EXECUTOR.execute(() -> {
+            PartsOutcome outcome = db.runInTransaction(() -> {
+                int updated = partDao.updatePartStatus(jobId, partIndex, SmsJobPartEntity.SENDING,
+                        success ? SmsJobPartEntity.SENT : SmsJobPartEntity.FAILED,
+                        success ? null : errorCode, System.currentTimeMillis());
+                if (updated == 0) {
+                    return PartsOutcome.IGNORED;
+                }
+
+                boolean failed = false;
+                for (SmsJobPartEntity part : partDao.getParts(jobId)) {
+                    if (SmsJobPartEntity.SENDING.equals(part.status)) {
+                        return PartsOutcome.PENDING;
+                    }
+                    failed |= SmsJobPartEntity.FAILED.equals(part.status);
+                }
+                return failed ? PartsOutcome.FAILED : PartsOutcome.SENT;
+            });
+            callback.onPartsUpdated(outcome);
+        });
+    }
 
-                jobDao.updateJob(job);
-                logEvent("INFO", "Job " + jobId + " scheduled for retry in " + (delayMillis / 1000) + "s");
+    /**
+     * Give up on the parts of a job still waiting for SMS_SENT (the send timed out), so that a
+     * retry resends just those parts. Parts that reported are left as they are.
+     */
+    public void failUnreportedParts(String jobId, int errorCode, Runnable onComplete) {
+        WRITE_EXECUTOR.execute(() -> {
+            partDao.failSendingParts(jobId, errorCode, System.currentTimeMillis());
 
-                if (onComplete != null) {
-                    onComplete.run();
+            if (onComplete != null) {
+                onComplete.run();
+            }
+        });
+    }
+
+    /**
+     * Record the delivery report of one part; the job is delivered once every part is.
+     */
+    public void recordPartDelivered(String jobId, int partIndex, PartsCallback callback) {
+        WRITE_EXECUTOR.execute(() -> {
+            PartsOutcome outcome = db.runInTransaction(() -> {
+                int updated = partDao.updatePartStatus(jobId, partIndex, SmsJobPartEntity.SENT,
+                        SmsJobPartEntity.DELIVERED, null, System.currentTimeMillis());
+                if (updated == 0) {
+                    return PartsOutcome.IGNORED;
+                }
+
+                for (SmsJobPartEntity part : partDao.getParts(jobId)) {
+                    if (!SmsJobPartEntity.DELIVERED.equals(part.status)) {
+                        return PartsOutcome.PENDING;
+                    }
                 }
+                return PartsOutcome.DELIVERED;
+            });
+            callback.onPartsUpdated(outcome);
+        });
+    }
+
+    /**
+     * Update a job's status in a single conditional UPDATE, group-committed with other writes.
+     * onComplete only runs if the transition was legal (see SmsJobStatus); otherwise, e.g. a
+     * SENT broadcast processed after DELIVERED, the job is left as it is.
+     * The returned future completes after the commit with whether the job moved.
+     */
+    public CompletableFuture<Boolean> updateJobStatus(String jobId, SmsJobStatus newStatus, Integer errorCode,
+                                                      String errorMessage, Runnable onComplete) {
+        long now = System.currentTimeMillis();
+        CompletableFuture<Boolean> result = writeBehind.submit(() -> jobDao.transitionStatus(jobId,
+                newStatus.previousValues(), newStatus.getValue(), errorCode, errorMessage, now) == 1);
+        result.thenAccept(applied -> {
+            if (!applied) {
+                rejectTransition(jobId, newStatus);
+                return;
+            }
+            logEvent("INFO", "Job " + jobId + " status -> " + newStatus.getValue());
+
+            if (onComplete != null) {
+                onComplete.run();
             }
         });
+        return result;
+    }
+
+    /**
+     * Mark a job for retry in a single conditional UPDATE, group-committed with other writes.
+     * onComplete only runs if the job could still be retried.
+     */
+    public CompletableFuture<Boolean> scheduleRetry(String jobId, int attemptNumber, long delayMillis,
+                                                    Runnable onComplete) {
+        long now = System.currentTimeMillis();
+        CompletableFuture<Boolean> result = writeBehind.submit(() -> jobDao.transitionToRetry(jobId,
+                SmsJobStatus.FAILED_RETRYING.previousValues(), attemptNumber, now + delayMillis, now) == 1);
+        result.thenAccept(applied -> {
+            if (!applied) {
+                rejectTransition(jobId, SmsJobStatus.FAILED_RETRYING);
+                return;
+            }
+            logEvent("INFO", "Job " + jobId + " scheduled for retry in " + (delayMillis / 1000) + "s");
+
+            if (onComplete != null) {
+                onComplete.run();
+            }
+        });
+        return result;
+    }
+
+    private void rejectTransition(String jobId, SmsJobStatus newStatus) {
+        GatewayMetrics.counter("jobs.transitions_rejected").incrementAndGet();
+        Log.d(TAG, "Ignored transition of job " + jobId + " to " + newStatus.getValue());
     }
 
     /**
      * Get all jobs ready for retry (nextRetryAt <= now).
      */
     public void getJobsReadyForRetry(JobListCallback callback) {
-        DATABASE_EXECUTOR.execute(() -> {
+        READ_EXECUTOR.execute(() -> {
             List<SmsJobEntity> jobs = jobDao.getJobsReadyForRetry(System.currentTimeMillis());
             callback.onJobsRetrieved(jobs);
         });
     }
 
+    /**
+     * Get all jobs waiting for a retry, including those not yet due.
+     */
+    public void getJobsAwaitingRetry(JobListCallback callback) {
+        READ_EXECUTOR.execute(() -> {
+            List<SmsJobEntity> jobs = jobDao.getJobsAwaitingRetry();
+            callback.onJobsRetrieved(jobs);
+        });
+    }
+
+    /**
+     * Get jobs still waiting to be sent, most urgent first.
+     */
+    public void getQueuedJobs(JobListCallback callback) {
+        READ_EXECUTOR.execute(() -> {
+            List<SmsJobEntity> jobs = jobDao.getQueuedJobs();
+            callback.onJobsRetrieved(jobs);
+        });
+    }
+
     /**
      * Get jobs with pending status reports (to flush to server on reconnect).
      */
     public void getJobsWithPendingReports(JobListCallback callback) {
-        DATABASE_EXECUTOR.execute(() -> {
+        READ_EXECUTOR.execute(() -> {
             List<SmsJobEntity> jobs = jobDao.getJobsWithPendingReports();
             callback.onJobsRetrieved(jobs);
         });
@@ -145,17 +321,46 @@ public class SmsJobRepository {
 
     /**
      * Mark a job as having a pending report (status update couldn't be sent).
+     * Group-committed with other writes.
      */
-    public void setPendingReport(String jobId, boolean pending, Runnable onComplete) {
-        DATABASE_EXECUTOR.execute(() -> {
-            SmsJobEntity job = jobDao.getJobById(jobId);
-            if (job != null) {
-                job.pendingReport = pending;
-                jobDao.updateJob(job);
+    public CompletableFuture<Boolean> setPendingReport(String jobId, boolean pending, Runnable onComplete) {
+        CompletableFuture<Boolean> result = writeBehind.submit(
+                () -> jobDao.setPendingReport(jobId, pending) == 1);
+        result.thenAccept(applied -> {
+            if (applied && onComplete != null) {
+                onComplete.run();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Flag several jobs as having a pending report (status updates spilled under backpressure).
+     */
+    public void markPendingReports(List<String> jobIds, Runnable onComplete) {
+        WRITE_EXECUTOR.execute(() -> {
+            jobDao.markPendingReports(jobIds);
 
-                if (onComplete != null) {
-                    onComplete.run();
+            if (onComplete != null) {
+                onComplete.run();
+            }
+        });
+    }
+
+    /**
+     * Clear the pending report flag of jobs whose current state has been sent to the server.
+     * Jobs that changed after being read keep their flag so the newer state is reported too.
+     */
+    public void clearPendingReports(List<SmsJobEntity> reportedJobs, Runnable onComplete) {
+        WRITE_EXECUTOR.execute(() -> {
+            db.runInTransaction(() -> {
+                for (SmsJobEntity job : reportedJobs) {
+                    jobDao.clearPendingReport(job.jobId, job.updatedAt);
                 }
+            });
+
+            if (onComplete != null) {
+                onComplete.run();
             }
         });
     }
@@ -168,37 +373,34 @@ public class SmsJobRepository {
     }
 
     /**
-     * Get recent activity log entries.
+     * Get recent activity log entries (served from memory, newest first).
      */
     public LiveData<List<EventLogEntity>> getRecentEventsLive(int limit) {
-        return eventLogDao.getRecentEventsLive(limit);
+        return eventLog.recentEvents(limit);
     }
 
     /**
      * Log an event for debugging and UI display.
+     * Never blocks; events reach the database writer in one batch per flush interval.
      */
     public void logEvent(String level, String message) {
-        DATABASE_EXECUTOR.execute(() -> {
-            EventLogEntity event = new EventLogEntity(
-                    System.currentTimeMillis(),
-                    level,
-                    message
-            );
-            eventLogDao.insertEvent(event);
-            eventLogDao.cleanupOldEvents();
-            Log.d(TAG, level + ": " + message);
-        });
+        eventLog.add(new EventLogEntity(
+                System.currentTimeMillis(),
+                level,
+                message
+        ));
+        Log.d(TAG, level + ": " + message);
     }
 
     /**
      * Clear all data (for testing/reset).
      */
     public void clearAll() {
-        DATABASE_EXECUTOR.execute(() -> {
+        WRITE_EXECUTOR.execute(() -> {
             jobDao.deleteAll();
-            eventLogDao.deleteAll();
             Log.i(TAG, "All data cleared");
         });
+        eventLog.clear();
     }
 
     // Callbacks for async operations
@@ -209,4 +411,19 @@ public class SmsJobRepository {
     public interface JobListCallback {
         void onJobsRetrieved(List<SmsJobEntity> jobs);
     }
+
+    public interface PartsCallback {
+        void onPartsUpdated(PartsOutcome outcome);
+    }
+
+    /**
+     * What one part's result means for its multipart job.
+     */
+    public enum PartsOutcome {
+        PENDING,    // other parts have not reported yet
+        SENT,       // every part is sent
+        DELIVERED,  // every part is delivered
+        FAILED,     // every part has reported and at least one failed
+        IGNORED     // stale or repeated broadcast
+    }
 }
@@ -0,0 +1,119 @@
+package com.smstool.gateway.data.repository;
+
+import android.util.Log;
+
+import com.smstool.gateway.data.db.AppDatabase;
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit for small job writes (status transitions, retries, pending-report flags).
+ * Mutations are collected for a short window, or until `maxEntries` are waiting, and then
+ * applied in submission order inside one transaction on the database writer. One commit
+ * (one WAL sync, one LiveData invalidation) then covers a whole burst of delivery reports.
+ * Each caller gets a future that completes after the commit: true if its mutation changed a row.
+ */
+class WriteBehindBuffer {
+    private static final String TAG = "WriteBehindBuffer";
+
+    private final AppDatabase db;
+    private final Executor databaseExecutor;
+    private final long windowMillis;
+    private final int maxEntries;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final AtomicLong commitsCounter = GatewayMetrics.counter("db.group_commits");
+    private final AtomicLong writesCounter = GatewayMetrics.counter("db.group_commit_writes");
+    private final LatencyHistogram commitLatency = GatewayMetrics.histogram("db.group_commit_latency");
+
+    WriteBehindBuffer(AppDatabase db, Executor databaseExecutor, long windowMillis, int maxEntries) {
+        this.db = db;
+        this.databaseExecutor = databaseExecutor;
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Queue a mutation for the next group commit.
+     */
+    CompletableFuture<Boolean> submit(Mutation mutation) {
+        Pending entry = new Pending(mutation);
+        synchronized (this) {
+            pending.add(entry);
+            if (pending.size() >= maxEntries) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return entry.result;
+    }
+
+    // Hand the current group to the database writer
+    private synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        databaseExecutor.execute(() -> commit(batch));
+    }
+
+    private void commit(List<Pending> batch) {
+        boolean[] applied = new boolean[batch.size()];
+        try {
+            db.runInTransaction(() -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    applied[i] = batch.get(i).mutation.apply();
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Group commit of " + batch.size() + " writes failed", e);
+            for (Pending entry : batch) {
+                entry.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        commitsCounter.incrementAndGet();
+        writesCounter.addAndGet(batch.size());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending entry = batch.get(i);
+            commitLatency.record(now - entry.submittedAt);
+            entry.result.complete(applied[i]);
+        }
+    }
+
+    private static class Pending {
+        final Mutation mutation;
+        final long submittedAt = System.currentTimeMillis();
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Pending(Mutation mutation) {
+            this.mutation = mutation;
+        }
+    }
+
+    // A write applied inside the group transaction; returns true if it changed a row
+    interface Mutation {
+        boolean apply();
+    }
+}
@@ -0,0 +1,394 @@
+package com.smstool.gateway.network;
+
+import com.smstool.gateway.data.model.SmsJobStatus;
+import com.smstool.gateway.network.message.InboundMessage;
+import com.smstool.gateway.network.message.PingMessage;
+import com.smstool.gateway.network.message.SmsJobBatchMessage;
+import com.smstool.gateway.network.message.SmsJobMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the gateway protocol, carried in binary WebSocket frames.
+ *
+ * Frame layout: [version byte][type byte][fields...]
+ * - unsigned ints and timestamps (epoch millis) are LEB128 varints
+ * - strings are varint(byteLength + 1) followed by UTF-8 bytes; 0 means null
+ * - nullable ints are varint(zigzag(value) + 1); 0 means null
+ * - nullable sequence numbers are varint(seq + 1); 0 means null
+ * - job status is a single byte code (see statusCode); flags are a single 0/1 byte
+ *
+ * Field order per type mirrors the JSON messages, minus the repeated key names.
+ * The device advertises support in device_info; JSON text frames remain the fallback.
+ * Any change to a layout or a code must bump VERSION and CODEC_NAME together, so a peer
+ * speaking the old layout rejects frames instead of misreading them.
+ * v2: sms_job gained seq, priority and transliterate; status codes no longer follow enum order.
+ */
+public class BinaryCodec {
+    public static final String CODEC_NAME = "binary-v2";
+
+    private static final byte VERSION = 2;
+
+    private static final byte TYPE_SMS_JOB = 1;
+    private static final byte TYPE_STATUS_UPDATE = 2;
+    private static final byte TYPE_PING = 3;
+    private static final byte TYPE_PONG = 4;
+    private static final byte TYPE_STATUS_BATCH = 5;
+    private static final byte TYPE_SMS_JOB_BATCH = 6;
+
+    // ========================
+    // Encoding
+    // ========================
+
+    // Server → device direction: the device only decodes these (the encoders back the codec tests)
+    public static byte[] encodeSmsJob(SmsJobMessage job) {
+        Output out = new Output(32 + job.body.length() * 2);
+        out.header(TYPE_SMS_JOB);
+        writeSmsJobFields(out, job);
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeSmsJobBatch(String messageId, List<SmsJobMessage> jobs) {
+        Output out = new Output(64 * jobs.size() + 16);
+        out.header(TYPE_SMS_JOB_BATCH);
+        out.string(messageId);
+        out.varint(jobs.size());
+        for (SmsJobMessage job : jobs) {
+            writeSmsJobFields(out, job);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeStatusUpdate(String messageId, long seq, StatusUpdate update) {
+        Output out = new Output(64);
+        out.header(TYPE_STATUS_UPDATE);
+        out.string(messageId);
+        out.varint(seq);
+        writeStatusFields(out, update);
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeStatusBatch(String messageId, long seq, List<StatusUpdate> updates) {
+        Output out = new Output(48 * updates.size() + 16);
+        out.header(TYPE_STATUS_BATCH);
+        out.string(messageId);
+        out.varint(seq);
+        out.varint(updates.size());
+        for (StatusUpdate update : updates) {
+            writeStatusFields(out, update);
+        }
+        return out.toByteArray();
+    }
+
+    // Server → device direction, see encodeSmsJob
+    public static byte[] encodePing(String messageId, long timestamp) {
+        Output out = new Output(32);
+        out.header(TYPE_PING);
+        out.string(messageId);
+        out.varint(timestamp);
+        return out.toByteArray();
+    }
+
+    public static byte[] encodePong(String messageId, String pingMessageId, long timestamp) {
+        Output out = new Output(48);
+        out.header(TYPE_PONG);
+        out.string(messageId);
+        out.string(pingMessageId);
+        out.varint(timestamp);
+        return out.toByteArray();
+    }
+
+    private static void writeSmsJobFields(Output out, SmsJobMessage job) {
+        out.string(job.messageId);
+        out.string(job.jobId);
+        out.string(job.to);
+        out.string(job.body);
+        out.nullableInt(job.maxRetries);
+        out.varint(job.seq != null ? job.seq + 1 : 0);
+        out.nullableInt(job.priority);
+        out.writeByte(job.transliterate ? 1 : 0);
+    }
+
+    private static void writeStatusFields(Output out, StatusUpdate update) {
+        out.string(update.jobId);
+        out.writeByte(statusCode(SmsJobStatus.fromString(update.status)));
+        out.varint(update.attempt);
+        out.nullableInt(update.errorCode);
+        out.string(update.errorMessage);
+        out.varint(update.timestamp);
+    }
+
+    // ========================
+    // Decoding
+    // ========================
+
+    /**
+     * Decode a server → device frame (sms_job, sms_job_batch or ping).
+     *
+     * @throws IOException if the frame is malformed or of an unexpected type
+     */
+    public static InboundMessage decode(byte[] frame) throws IOException {
+        Input in = new Input(frame);
+        byte type = in.header();
+        switch (type) {
+            case TYPE_SMS_JOB:
+                return readSmsJob(in);
+            case TYPE_SMS_JOB_BATCH: {
+                String messageId = in.string();
+                int count = in.count();
+                List<SmsJobMessage> jobs = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    jobs.add(readSmsJob(in));
+                }
+                return new SmsJobBatchMessage(messageId, jobs);
+            }
+            case TYPE_PING: {
+                String messageId = in.string();
+                in.varint();  // timestamp
+                return new PingMessage(messageId);
+            }
+            default:
+                throw new IOException("Unexpected binary message type: " + type);
+        }
+    }
+
+    /**
+     * Cheaply check whether a frame is a ping, so it can be answered without queueing.
+     * Returns null for anything else (including malformed frames), leaving it to decode().
+     */
+    public static PingMessage peekPing(byte[] frame) {
+        if (frame.length < 2 || frame[0] != VERSION || frame[1] != TYPE_PING) {
+            return null;
+        }
+        try {
+            return (PingMessage) decode(frame);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decode a status_update or status_batch frame (device → server direction, used by tests).
+     */
+    public static List<StatusUpdate> decodeStatusUpdates(byte[] frame) throws IOException {
+        Input in = new Input(frame);
+        byte type = in.header();
+        in.string();  // message_id
+        in.varint();  // seq
+        if (type == TYPE_STATUS_UPDATE) {
+            List<StatusUpdate> updates = new ArrayList<>(1);
+            updates.add(readStatusUpdate(in));
+            return updates;
+        } else if (type == TYPE_STATUS_BATCH) {
+            int count = in.count();
+            List<StatusUpdate> updates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                updates.add(readStatusUpdate(in));
+            }
+            return updates;
+        }
+        throw new IOException("Not a status frame: " + type);
+    }
+
+    /**
+     * Decode the ping_message_id of a pong frame (device → server direction, used by tests).
+     */
+    public static String decodePongPingId(byte[] frame) throws IOException {
+        Input in = new Input(frame);
+        byte type = in.header();
+        if (type != TYPE_PONG) {
+            throw new IOException("Not a pong frame: " + type);
+        }
+        in.string();  // message_id
+        return in.string();
+    }
+
+    private static SmsJobMessage readSmsJob(Input in) throws IOException {
+        String messageId = in.string();
+        String jobId = in.string();
+        String to = in.string();
+        String body = in.string();
+        Integer maxRetries = in.nullableInt();
+        long encodedSeq = in.varint();
+        Long seq = encodedSeq != 0 ? encodedSeq - 1 : null;
+        Integer priority = in.nullableInt();
+        boolean transliterate = in.readByte() != 0;
+        return new SmsJobMessage(messageId, jobId, to, body, maxRetries, seq, priority, transliterate);
+    }
+
+    private static StatusUpdate readStatusUpdate(Input in) throws IOException {
+        String jobId = in.string();
+        SmsJobStatus status = statusForCode(in.readByte());
+        int attempt = (int) in.varint();
+        Integer errorCode = in.nullableInt();
+        String errorMessage = in.string();
+        long timestamp = in.varint();
+        return new StatusUpdate(jobId, status.getValue(), attempt, errorCode, errorMessage, timestamp);
+    }
+
+    // Wire code of a job status. Fixed per protocol version; never reorder or reuse a code.
+    private static int statusCode(SmsJobStatus status) {
+        switch (status) {
+            case QUEUED:
+                return 1;
+            case SENDING:
+                return 2;
+            case SENT:
+                return 3;
+            case DELIVERED:
+                return 4;
+            case FAILED_RETRYING:
+                return 5;
+            case FAILED_PERMANENT:
+                return 6;
+            default:
+                throw new IllegalArgumentException("No wire code for status " + status);
+        }
+    }
+
+    private static SmsJobStatus statusForCode(int code) throws IOException {
+        for (SmsJobStatus status : SmsJobStatus.values()) {
+            if (statusCode(status) == code) {
+                return status;
+            }
+        }
+        throw new IOException("Unknown status code: " + code);
+    }
+
+    // ========================
+    // Primitive readers/writers
+    // ========================
+
+    private static class Output {
+        private byte[] buf;
+        private int pos;
+
+        Output(int initialCapacity) {
+            buf = new byte[Math.max(initialCapacity, 16)];
+        }
+
+        void header(byte type) {
+            writeByte(VERSION);
+            writeByte(type);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void nullableInt(Integer value) {
+            if (value == null) {
+                varint(0);
+            } else {
+                int v = value;
+                varint(((long) ((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL) + 1);
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[pos];
+            System.arraycopy(buf, 0, result, 0, pos);
+            return result;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                byte[] grown = new byte[Math.max(buf.length * 2, pos + extra)];
+                System.arraycopy(buf, 0, grown, 0, pos);
+                buf = grown;
+            }
+        }
+    }
+
+    private static class Input {
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte header() throws IOException {
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary protocol version: " + version);
+            }
+            return (byte) readByte();
+        }
+
+        int readByte() throws IOException {
+            if (pos >= buf.length) {
+                throw new IOException("Truncated binary frame");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        long varint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int count() throws IOException {
+            long count = varint();
+            if (count < 0 || count > buf.length - pos) {
+                throw new IOException("Invalid element count: " + count);
+            }
+            return (int) count;
+        }
+
+        Integer nullableInt() throws IOException {
+            long encoded = varint();
+            if (encoded == 0) {
+                return null;
+            }
+            int zigzag = (int) (encoded - 1);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String string() throws IOException {
+            long encoded = varint();
+            if (encoded == 0) {
+                return null;
+            }
+            long length = encoded - 1;
+            if (length > buf.length - pos) {
+                throw new IOException("Truncated binary frame");
+            }
+            String value = new String(buf, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            return value;
+        }
+    }
+}
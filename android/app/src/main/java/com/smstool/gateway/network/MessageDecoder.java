@@ -0,0 +1,258 @@
+package com.smstool.gateway.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.smstool.gateway.network.message.ConfigMessage;
+import com.smstool.gateway.network.message.ErrorMessage;
+import com.smstool.gateway.network.message.InboundMessage;
+import com.smstool.gateway.network.message.PingMessage;
+import com.smstool.gateway.network.message.SmsJobBatchMessage;
+import com.smstool.gateway.network.message.SmsJobMessage;
+import com.smstool.gateway.network.message.UnknownMessage;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass streaming decoder for incoming WebSocket messages.
+ * Reads each frame once with a JsonReader and builds a typed message directly,
+ * without an intermediate JsonObject tree. Fields may appear in any order.
+ */
+public class MessageDecoder {
+    private static final int PING_MAX_LENGTH = 256;  // pings are tiny; longer frames are never peeked
+
+    /**
+     * Decode a JSON text frame into a typed message.
+     *
+     * @throws IOException if the frame is not a well-formed JSON object
+     */
+    public static InboundMessage decode(String jsonText) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(jsonText))) {
+            return readMessage(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cheaply check whether a text frame is a ping, so it can be answered without queueing.
+     * Returns null for anything else (including malformed frames), leaving it to decode().
+     */
+    public static PingMessage peekPing(String jsonText) {
+        if (jsonText.length() > PING_MAX_LENGTH || !jsonText.contains("\"ping\"")) {
+            return null;
+        }
+        try {
+            InboundMessage message = decode(jsonText);
+            return message instanceof PingMessage ? (PingMessage) message : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static InboundMessage readMessage(JsonReader reader) throws IOException {
+        String type = null;
+        String messageId = null;
+        String jobId = null;
+        String to = null;
+        String body = null;
+        Integer maxRetries = null;
+        Long seq = null;
+        Integer priority = null;
+        boolean transliterate = false;
+        String code = null;
+        String detail = null;
+        List<SmsJobMessage> jobs = null;
+        Integer sendBurst = null;
+        Integer sendRatePerMinute = null;
+        Integer sendWindow = null;
+        Boolean statusBatch = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    type = nextString(reader);
+                    break;
+                case "message_id":
+                    messageId = nextString(reader);
+                    break;
+                case "job_id":
+                    jobId = nextString(reader);
+                    break;
+                case "to":
+                    to = nextString(reader);
+                    break;
+                case "body":
+                    body = nextString(reader);
+                    break;
+                case "max_retries":
+                    maxRetries = nextInt(reader);
+                    break;
+                case "seq":
+                    seq = nextLong(reader);
+                    break;
+                case "priority":
+                    priority = nextInt(reader);
+                    break;
+                case "transliterate":
+                    transliterate = nextBoolean(reader);
+                    break;
+                case "code":
+                    code = nextString(reader);
+                    break;
+                case "detail":
+                    detail = nextString(reader);
+                    break;
+                case "jobs":
+                    jobs = readJobs(reader);
+                    break;
+                case "send_burst":
+                    sendBurst = nextInt(reader);
+                    break;
+                case "send_rate_per_minute":
+                    sendRatePerMinute = nextInt(reader);
+                    break;
+                case "send_window":
+                    sendWindow = nextInt(reader);
+                    break;
+                case "status_batch":
+                    statusBatch = nextBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (type == null) {
+            return new UnknownMessage(messageId, null);
+        }
+        switch (type) {
+            case "sms_job":
+                return new SmsJobMessage(messageId, jobId, to, body, maxRetries, seq, priority, transliterate);
+            case "sms_job_batch":
+                return new SmsJobBatchMessage(messageId, jobs != null ? jobs : new ArrayList<>());
+            case "ping":
+                return new PingMessage(messageId);
+            case "error":
+                return new ErrorMessage(messageId, code, detail);
+            case "config":
+                return new ConfigMessage(messageId, sendBurst, sendRatePerMinute, sendWindow,
+                        statusBatch);
+            default:
+                return new UnknownMessage(messageId, type);
+        }
+    }
+
+    private static List<SmsJobMessage> readJobs(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        List<SmsJobMessage> jobs = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            jobs.add(readJob(reader));
+        }
+        reader.endArray();
+        return jobs;
+    }
+
+    private static SmsJobMessage readJob(JsonReader reader) throws IOException {
+        String messageId = null;
+        String jobId = null;
+        String to = null;
+        String body = null;
+        Integer maxRetries = null;
+        Long seq = null;
+        Integer priority = null;
+        boolean transliterate = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "message_id":
+                    messageId = nextString(reader);
+                    break;
+                case "job_id":
+                    jobId = nextString(reader);
+                    break;
+                case "to":
+                    to = nextString(reader);
+                    break;
+                case "body":
+                    body = nextString(reader);
+                    break;
+                case "max_retries":
+                    maxRetries = nextInt(reader);
+                    break;
+                case "seq":
+                    seq = nextLong(reader);
+                    break;
+                case "priority":
+                    priority = nextInt(reader);
+                    break;
+                case "transliterate":
+                    transliterate = nextBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new SmsJobMessage(messageId, jobId, to, body, maxRetries, seq, priority, transliterate);
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static Integer nextInt(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            return reader.nextInt();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    private static Long nextLong(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            return reader.nextLong();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
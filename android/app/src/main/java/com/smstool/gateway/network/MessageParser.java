@@ -1,129 +1,76 @@
 package com.smstool.gateway.network;
 
-import android.util.Log;
-
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import java.util.List;
 
 /**
- * Parses incoming WebSocket messages from the backend.
- * Provides utility methods for constructing outgoing messages.
+ * Utility methods for constructing outgoing WebSocket messages.
+ * Incoming messages are decoded by MessageDecoder.
  */
 public class MessageParser {
-    private static final String TAG = "MessageParser";
-    private static final Gson gson = new Gson();
-
-    /**
-     * Parse the type of a JSON message.
-     */
-    public static String getMessageType(String jsonText) {
-        try {
-            JsonObject json = JsonParser.parseString(jsonText).getAsJsonObject();
-            return json.has("type") ? json.get("type").getAsString() : null;
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to parse message type", e);
-            return null;
-        }
-    }
 
     /**
-     * Parse a complete JSON message into a JsonObject.
-     */
-    public static JsonObject parseMessage(String jsonText) throws Exception {
-        try {
-            return JsonParser.parseString(jsonText).getAsJsonObject();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to parse JSON message", e);
-            throw new Exception("Invalid JSON: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Create a device_info message to send on connection.
+     * Create a device_info message to send on connection, carrying resume state.
+     * last_job_seq is the highest sms_job seq stored locally, so the server only replays later jobs;
+     * last_status_seq is the last status frame seq this device used (0 if none).
      */
     public static String createDeviceInfoMessage(String deviceId, String deviceName,
-                                                  String androidVersion, String appVersion) {
-        JsonObject msg = new JsonObject();
-        msg.addProperty("type", "device_info");
-        msg.addProperty("message_id", java.util.UUID.randomUUID().toString());
-        msg.addProperty("device_id", deviceId);
-        msg.addProperty("device_name", deviceName);
-        msg.addProperty("android_version", androidVersion);
-        msg.addProperty("app_version", appVersion);
-        msg.addProperty("connected_at", java.time.Instant.now().toString());
-        return msg.toString();
+                                                  String androidVersion, String appVersion,
+                                                  long lastJobSeq, long lastStatusSeq) {
+        return MessageWriter.begin("device_info")
+                .field("device_id", deviceId)
+                .field("device_name", deviceName)
+                .field("android_version", androidVersion)
+                .field("app_version", appVersion)
+                .field("codecs", "json", BinaryCodec.CODEC_NAME)
+                .field("last_job_seq", lastJobSeq)
+                .field("last_status_seq", lastStatusSeq)
+                .timestampField("connected_at", System.currentTimeMillis())
+                .end();
     }
 
     /**
-     * Create a status_update message for a completed job.
+     * Create a sequence-numbered status_update message.
      */
-    public static String createStatusUpdateMessage(String jobId, String status, int attempt) {
-        return createStatusUpdateMessage(jobId, status, attempt, null, null);
+    public static String createStatusUpdateMessage(StatusUpdate update, long seq) {
+        MessageWriter writer = MessageWriter.begin("status_update").field("seq", seq);
+        writeStatusFields(writer, update);
+        return writer.end();
     }
 
     /**
-     * Create a status_update message with error details.
+     * Create a sequence-numbered status_batch message carrying several status transitions in one frame.
      */
-    public static String createStatusUpdateMessage(String jobId, String status, int attempt,
-                                                   Integer errorCode, String errorMessage) {
-        JsonObject msg = new JsonObject();
-        msg.addProperty("type", "status_update");
-        msg.addProperty("message_id", java.util.UUID.randomUUID().toString());
-        msg.addProperty("job_id", jobId);
-        msg.addProperty("status", status);
-        msg.addProperty("attempt", attempt);
-        if (errorCode != null) {
-            msg.addProperty("error_code", errorCode);
-        } else {
-            msg.add("error_code", com.google.gson.JsonNull.INSTANCE);
-        }
-        if (errorMessage != null) {
-            msg.addProperty("error_message", errorMessage);
-        } else {
-            msg.add("error_message", com.google.gson.JsonNull.INSTANCE);
+    public static String createStatusBatchMessage(List<StatusUpdate> updates, long seq) {
+        MessageWriter writer = MessageWriter.begin("status_batch")
+                .field("seq", seq)
+                .beginArray("updates");
+        for (StatusUpdate update : updates) {
+            writer.beginObject();
+            writeStatusFields(writer, update);
+            writer.endObject();
         }
-        msg.addProperty("timestamp", java.time.Instant.now().toString());
-        return msg.toString();
+        return writer.endArray()
+                .timestampField("timestamp", System.currentTimeMillis())
+                .end();
     }
 
-    /**
-     * Create a pong message in response to a ping.
-     */
-    public static String createPongMessage(String pingMessageId) {
-        JsonObject msg = new JsonObject();
-        msg.addProperty("type", "pong");
-        msg.addProperty("message_id", java.util.UUID.randomUUID().toString());
-        msg.addProperty("ping_message_id", pingMessageId);
-        msg.addProperty("timestamp", java.time.Instant.now().toString());
-        return msg.toString();
+    private static void writeStatusFields(MessageWriter writer, StatusUpdate update) {
+        writer.field("job_id", update.jobId)
+                .field("status", update.status)
+                .field("attempt", update.attempt)
+                .field("error_code", update.errorCode)
+                .field("error_message", update.errorMessage)
+                .timestampField("timestamp", update.timestamp);
     }
 
     /**
-     * Extract a field from a JSON message.
+     * Create a pong message in response to a ping.
      */
-    public static String getStringField(JsonObject json, String fieldName, String defaultValue) {
-        try {
-            if (json.has(fieldName) && !json.get(fieldName).isJsonNull()) {
-                return json.get(fieldName).getAsString();
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to extract field: " + fieldName);
-        }
-        return defaultValue;
+    public static String createPongMessage(String pingMessageId) {
+        return MessageWriter.begin("pong")
+                .field("ping_message_id", pingMessageId)
+                .timestampField("timestamp", System.currentTimeMillis())
+                .end();
     }
 
-    /**
-     * Extract an integer field from a JSON message.
-     */
-    public static Integer getIntField(JsonObject json, String fieldName) {
-        try {
-            if (json.has(fieldName) && !json.get(fieldName).isJsonNull()) {
-                return json.get(fieldName).getAsInt();
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to extract int field: " + fieldName);
-        }
-        return null;
-    }
 }
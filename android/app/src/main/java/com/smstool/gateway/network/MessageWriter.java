@@ -0,0 +1,269 @@
+package com.smstool.gateway.network;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming JSON writer for outgoing messages.
+ * Appends fields straight into a reusable per-thread buffer instead of building a JsonObject,
+ * uses a cheap monotonic message id instead of UUID.randomUUID(), and formats timestamps from
+ * a per-second cached ISO-8601 prefix. Output matches what Gson produced for the same fields.
+ */
+public class MessageWriter {
+    private static final ThreadLocal<MessageWriter> WRITERS = ThreadLocal.withInitial(MessageWriter::new);
+
+    // Process-unique prefix + counter: unique per connection, no SecureRandom on the hot path
+    private static final String MESSAGE_ID_PREFIX =
+            Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16) + "-";
+    private static final AtomicLong MESSAGE_COUNTER = new AtomicLong();
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+
+    private final StringBuilder buffer = new StringBuilder(256);
+    private boolean needsComma;
+
+    // Cached "yyyy-MM-ddTHH:mm:ss" for the last formatted epoch second
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedSecondPrefix;
+
+    private MessageWriter() {
+    }
+
+    /**
+     * Start a new message of the given type on this thread's writer.
+     * Writes the type and a fresh message_id field.
+     */
+    public static MessageWriter begin(String type) {
+        MessageWriter writer = WRITERS.get();
+        writer.buffer.setLength(0);
+        writer.buffer.append('{');
+        writer.needsComma = false;
+        writer.field("type", type);
+        writer.field("message_id", nextMessageId());
+        return writer;
+    }
+
+    /**
+     * Generate a new message id (monotonic within this process).
+     */
+    public static String nextMessageId() {
+        return MESSAGE_ID_PREFIX + Long.toHexString(MESSAGE_COUNTER.incrementAndGet());
+    }
+
+    /**
+     * Write a string field (null is written as JSON null).
+     */
+    public MessageWriter field(String name, String value) {
+        name(name);
+        if (value == null) {
+            buffer.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    /**
+     * Write an integer field (null is written as JSON null).
+     */
+    public MessageWriter field(String name, Integer value) {
+        name(name);
+        if (value == null) {
+            buffer.append("null");
+        } else {
+            buffer.append(value.intValue());
+        }
+        return this;
+    }
+
+    /**
+     * Write a nullable long field (null is written as JSON null).
+     */
+    public MessageWriter field(String name, Long value) {
+        name(name);
+        if (value == null) {
+            buffer.append("null");
+        } else {
+            buffer.append(value.longValue());
+        }
+        return this;
+    }
+
+    /**
+     * Write a long field.
+     */
+    public MessageWriter field(String name, long value) {
+        name(name);
+        buffer.append(value);
+        return this;
+    }
+
+    /**
+     * Write a boolean field.
+     */
+    public MessageWriter field(String name, boolean value) {
+        name(name);
+        buffer.append(value);
+        return this;
+    }
+
+    /**
+     * Write an array of strings.
+     */
+    public MessageWriter field(String name, String... values) {
+        name(name);
+        buffer.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            string(values[i]);
+        }
+        buffer.append(']');
+        return this;
+    }
+
+    /**
+     * Write an epoch-millis timestamp as an ISO-8601 UTC string.
+     */
+    public MessageWriter timestampField(String name, long epochMillis) {
+        name(name);
+        buffer.append('"');
+        appendTimestamp(epochMillis);
+        buffer.append('"');
+        return this;
+    }
+
+    /**
+     * Start an array field whose elements are objects.
+     */
+    public MessageWriter beginArray(String name) {
+        name(name);
+        buffer.append('[');
+        needsComma = false;
+        return this;
+    }
+
+    /**
+     * End the current array.
+     */
+    public MessageWriter endArray() {
+        buffer.append(']');
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Start an object element inside an array.
+     */
+    public MessageWriter beginObject() {
+        if (needsComma) {
+            buffer.append(',');
+        }
+        buffer.append('{');
+        needsComma = false;
+        return this;
+    }
+
+    /**
+     * End the current object element.
+     */
+    public MessageWriter endObject() {
+        buffer.append('}');
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Close the message and return it as a String.
+     */
+    public String end() {
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private void name(String name) {
+        if (needsComma) {
+            buffer.append(',');
+        }
+        string(name);
+        buffer.append(':');
+        needsComma = true;
+    }
+
+    /**
+     * Append a quoted, escaped JSON string (same escaping as Gson's JsonWriter without HTML-safe mode).
+     */
+    private void string(String value) {
+        buffer.append('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buffer.append("\\\"");
+                    break;
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\b':
+                    buffer.append("\\b");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\f':
+                    buffer.append("\\f");
+                    break;
+                case '\u2028':
+                case '\u2029':
+                    unicodeEscape(c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        unicodeEscape(c);
+                    } else {
+                        buffer.append(c);
+                    }
+                    break;
+            }
+        }
+        buffer.append('"');
+    }
+
+    private void unicodeEscape(char c) {
+        buffer.append("\\u")
+                .append(HEX[(c >> 12) & 0xF])
+                .append(HEX[(c >> 8) & 0xF])
+                .append(HEX[(c >> 4) & 0xF])
+                .append(HEX[c & 0xF]);
+    }
+
+    private void appendTimestamp(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedSecondPrefix = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC).format(SECOND_FORMAT);
+        }
+        buffer.append(cachedSecondPrefix);
+        // Like Instant.toString(), whole seconds have no fraction
+        if (millis != 0) {
+            buffer.append('.')
+                    .append((char) ('0' + millis / 100))
+                    .append((char) ('0' + (millis / 10) % 10))
+                    .append((char) ('0' + millis % 10));
+        }
+        buffer.append('Z');
+    }
+}
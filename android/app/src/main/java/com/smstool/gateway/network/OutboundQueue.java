@@ -0,0 +1,164 @@
+package com.smstool.gateway.network;
+
+import android.util.Log;
+
+import com.smstool.gateway.util.GatewayMetrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/**
+ * Flow control in front of OkHttp's WebSocket send buffer.
+ * OkHttp buffers outgoing frames in memory (up to 16 MB, then it fails the socket).
+ * Once queueSize() passes the high watermark, non-control sends are refused so the caller
+ * can spill them to storage. The queue is polled until it drops below the low watermark,
+ * then the drain listener is notified so spilled messages can be resent in order.
+ */
+public class OutboundQueue {
+    private static final String TAG = "OutboundQueue";
+    private static final long DRAIN_POLL_INTERVAL = 100;  // milliseconds
+
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final ScheduledExecutorService drainPoller = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile WebSocket webSocket;
+    private volatile boolean paused = false;
+    private ScheduledFuture<?> drainPoll;
+    private DrainListener drainListener;
+
+    public OutboundQueue(long highWatermark, long lowWatermark) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        GatewayMetrics.gauge("ws.queue_bytes", () -> {
+            WebSocket ws = webSocket;
+            return ws != null ? ws.queueSize() : 0;
+        });
+    }
+
+    /**
+     * Set the listener notified when a paused queue has drained below the low watermark.
+     */
+    public void setDrainListener(DrainListener listener) {
+        this.drainListener = listener;
+    }
+
+    /**
+     * Attach the socket that frames are written to (null when disconnected).
+     */
+    public synchronized void attach(WebSocket webSocket) {
+        if (drainPoller.isShutdown()) {
+            return;
+        }
+        this.webSocket = webSocket;
+        if (webSocket == null) {
+            stopDrainPoll();
+            paused = false;
+        }
+    }
+
+    /**
+     * Check whether sends are currently being refused for backpressure.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Send a text frame, respecting the watermarks.
+     *
+     * @return true if the frame was handed to OkHttp, false if it must be retried later
+     */
+    public boolean send(String text) {
+        WebSocket ws = webSocket;
+        return ws != null && admit(ws) && ws.send(text);
+    }
+
+    /**
+     * Send a binary frame, respecting the watermarks.
+     */
+    public boolean send(ByteString bytes) {
+        WebSocket ws = webSocket;
+        return ws != null && admit(ws) && ws.send(bytes);
+    }
+
+    /**
+     * Send a small control frame (device_info, pong) regardless of the watermarks.
+     */
+    public boolean sendControl(String text) {
+        WebSocket ws = webSocket;
+        return ws != null && ws.send(text);
+    }
+
+    /**
+     * Send a small binary control frame regardless of the watermarks.
+     */
+    public boolean sendControl(ByteString bytes) {
+        WebSocket ws = webSocket;
+        return ws != null && ws.send(bytes);
+    }
+
+    /**
+     * Detach the socket and stop the drain poller. Every send is refused afterwards.
+     */
+    public synchronized void close() {
+        stopDrainPoll();
+        webSocket = null;
+        paused = true;
+        drainPoller.shutdownNow();
+    }
+
+    private boolean admit(WebSocket ws) {
+        if (paused) {
+            return false;
+        }
+        if (ws.queueSize() > highWatermark) {
+            pause();
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized void pause() {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        GatewayMetrics.counter("ws.backpressure_pauses").incrementAndGet();
+        Log.w(TAG, "Outbound queue above high watermark, pausing sends");
+        drainPoll = drainPoller.scheduleWithFixedDelay(this::checkDrained,
+                DRAIN_POLL_INTERVAL, DRAIN_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkDrained() {
+        WebSocket ws = webSocket;
+        if (ws == null || ws.queueSize() >= lowWatermark) {
+            return;
+        }
+        synchronized (this) {
+            stopDrainPoll();
+            paused = false;
+        }
+        Log.i(TAG, "Outbound queue below low watermark, resuming sends");
+        if (drainListener != null) {
+            drainListener.onDrained();
+        }
+    }
+
+    private void stopDrainPoll() {
+        if (drainPoll != null) {
+            drainPoll.cancel(false);
+            drainPoll = null;
+        }
+    }
+
+    // Callback for resuming spilled sends
+    public interface DrainListener {
+        void onDrained();
+    }
+}
@@ -0,0 +1,185 @@
+package com.smstool.gateway.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.smstool.gateway.util.GatewayMetrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Schedules WebSocket reconnects based on network availability.
+ * - When a validated network appears (e.g. after a Wi-Fi to LTE handover) it reconnects immediately.
+ *   A different default network counts as a new one even if the previous one was validated too.
+ * - Failed attempts back off with decorrelated jitter: delay = min(cap, random(base, previous * 3)).
+ * - Without a network, attempts are paused until the network callback fires, with the jittered
+ *   timer kept as a backstop in case a callback is missed.
+ * Each outage (first disconnect until the next successful connect) is recorded in GatewayMetrics.
+ */
+public class ReconnectScheduler {
+    private static final String TAG = "ReconnectScheduler";
+    private static final long BASE_DELAY = 1000;    // 1 second
+    private static final long MAX_DELAY = 60000;    // 60 seconds
+
+    private final ConnectivityManager connectivityManager;
+    private final Handler handler;
+    private final Runnable reconnectAction;
+    private final Runnable scheduledReconnect = this::attemptReconnect;
+
+    private boolean connected = false;
+    private Network currentNetwork;  // default network the callbacks last reported, null if none
+    private boolean networkValidated = false;
+    private int attempt = 0;
+    private long previousDelay = BASE_DELAY;
+    private long outageStartedAt = 0;  // elapsedRealtime, 0 when not in an outage
+
+    private final ConnectivityManager.NetworkCallback networkCallback =
+            new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    // A new default network, e.g. after a handover with no onLost in between
+                    Log.i(TAG, "Default network available");
+                    currentNetwork = network;
+                    networkValidated = true;
+                    onNetworkValidated();
+                }
+
+                @Override
+                public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                    boolean validated = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+                    boolean changed = !network.equals(currentNetwork);
+                    currentNetwork = network;
+                    if (validated && (changed || !networkValidated)) {
+                        networkValidated = true;
+                        onNetworkValidated();
+                    } else if (!validated) {
+                        networkValidated = false;
+                    }
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    // The previous default can be lost after its replacement became available
+                    if (!network.equals(currentNetwork)) {
+                        return;
+                    }
+                    Log.i(TAG, "Default network lost");
+                    currentNetwork = null;
+                    networkValidated = false;
+                }
+            };
+
+    /**
+     * @param handler         handler whose thread runs callbacks and the reconnect action
+     * @param reconnectAction starts a new connection attempt
+     */
+    public ReconnectScheduler(Context context, Handler handler, Runnable reconnectAction) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.handler = handler;
+        this.reconnectAction = reconnectAction;
+    }
+
+    /**
+     * Start listening for default network changes.
+     */
+    public void start() {
+        connectivityManager.registerDefaultNetworkCallback(networkCallback, handler);
+    }
+
+    /**
+     * Stop listening and cancel any pending reconnect.
+     */
+    public void stop() {
+        handler.removeCallbacks(scheduledReconnect);
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Network callback was not registered");
+        }
+    }
+
+    /**
+     * Called when the WebSocket has connected. Resets backoff and records the outage length.
+     */
+    public void onConnected() {
+        handler.post(() -> {
+            connected = true;
+            attempt = 0;
+            previousDelay = BASE_DELAY;
+            handler.removeCallbacks(scheduledReconnect);
+
+            if (outageStartedAt != 0) {
+                long downtime = SystemClock.elapsedRealtime() - outageStartedAt;
+                outageStartedAt = 0;
+                GatewayMetrics.histogram("reconnect.downtime").record(downtime);
+                Log.i(TAG, "Reconnected after " + downtime + "ms");
+            }
+        });
+    }
+
+    /**
+     * Called when the WebSocket closed or failed. Schedules the next attempt.
+     */
+    public void onDisconnected() {
+        handler.post(() -> {
+            connected = false;
+            if (outageStartedAt == 0) {
+                outageStartedAt = SystemClock.elapsedRealtime();
+                GatewayMetrics.counter("reconnect.outages").incrementAndGet();
+            }
+            scheduleNext();
+        });
+    }
+
+    /**
+     * Number of reconnect attempts in the current outage.
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Delay before the next attempt in the current outage.
+     */
+    public long getNextDelay() {
+        return previousDelay;
+    }
+
+    private void onNetworkValidated() {
+        if (connected || outageStartedAt == 0) {
+            return;
+        }
+        Log.i(TAG, "Validated network available, reconnecting now");
+        handler.removeCallbacks(scheduledReconnect);
+        previousDelay = BASE_DELAY;
+        attemptReconnect();
+    }
+
+    private void scheduleNext() {
+        handler.removeCallbacks(scheduledReconnect);
+        long delay = nextDelay();
+        Log.i(TAG, "Scheduling reconnect (attempt " + (attempt + 1) + ") in " + delay + "ms"
+                + (networkValidated ? "" : ", waiting for network"));
+        handler.postDelayed(scheduledReconnect, delay);
+    }
+
+    private long nextDelay() {
+        long upper = Math.max(BASE_DELAY + 1, previousDelay * 3);
+        previousDelay = Math.min(MAX_DELAY, ThreadLocalRandom.current().nextLong(BASE_DELAY, upper));
+        return previousDelay;
+    }
+
+    private void attemptReconnect() {
+        if (connected) {
+            return;
+        }
+        attempt++;
+        GatewayMetrics.counter("reconnect.attempts").incrementAndGet();
+        reconnectAction.run();
+    }
+}
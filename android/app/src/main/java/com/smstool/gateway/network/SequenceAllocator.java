@@ -0,0 +1,55 @@
+package com.smstool.gateway.network;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Allocates monotonically increasing numbers (status frame sequence numbers, PendingIntent ids).
+ * Numbers are reserved from persistent storage in blocks, so preferences are written once per
+ * block instead of once per number. After a restart allocation continues above the last reserved
+ * block, which may leave a gap but never reuses a number.
+ */
+public class SequenceAllocator {
+    private static final long BLOCK_SIZE = 1000;
+
+    private final LongConsumer saveReserved;
+    private long current;
+    private long reservedUpTo;
+
+    /**
+     * @param loadReserved reads the persisted upper bound of the reserved block
+     * @param saveReserved persists a new upper bound
+     */
+    public SequenceAllocator(LongSupplier loadReserved, LongConsumer saveReserved) {
+        this.saveReserved = saveReserved;
+        this.current = loadReserved.getAsLong();
+        this.reservedUpTo = current;
+    }
+
+    /**
+     * Allocate the next sequence number.
+     */
+    public synchronized long next() {
+        if (current >= reservedUpTo) {
+            reservedUpTo = current + BLOCK_SIZE;
+            saveReserved.accept(reservedUpTo);
+        }
+        return ++current;
+    }
+
+    /**
+     * Give back the most recently allocated number if its frame was never sent.
+     */
+    public synchronized void release(long seq) {
+        if (seq == current) {
+            current--;
+        }
+    }
+
+    /**
+     * Get the last allocated sequence number (0 if none).
+     */
+    public synchronized long last() {
+        return current;
+    }
+}
@@ -0,0 +1,132 @@
+package com.smstool.gateway.network;
+
+import android.util.Log;
+
+import com.smstool.gateway.data.model.SmsJobStatus;
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces job status transitions and reports them to the server in batches.
+ * Only the latest state per job_id is kept while a flush window is open; a pending state is
+ * only replaced by one it may legally move to, so a late SENDING never hides a SENT.
+ * A window closes after a fixed delay or once it holds the maximum number of entries,
+ * whichever comes first, and is handed to the sink in one call (one frame if the server
+ * accepts status_batch).
+ */
+public class StatusBatcher {
+    private static final String TAG = "StatusBatcher";
+
+    private final Sink sink;
+    private final long windowMillis;
+    private final int maxEntries;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // Pending updates keyed by job_id, in first-seen order
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final AtomicLong transitionsCounter = GatewayMetrics.counter("status.transitions");
+    private final AtomicLong framesSentCounter = GatewayMetrics.counter("status.frames_sent");
+    private final LatencyHistogram addedLatency = GatewayMetrics.histogram("status.added_latency");
+
+    public StatusBatcher(Sink sink, long windowMillis, int maxEntries) {
+        this.sink = sink;
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Queue a status transition. Replaces the pending transition for the same job if the job
+     * may move from that status to this one; otherwise the update is stale and dropped.
+     */
+    public void submit(StatusUpdate update) {
+        transitionsCounter.incrementAndGet();
+        synchronized (pending) {
+            Pending previous = pending.get(update.jobId);
+            if (previous != null && !SmsJobStatus.fromString(previous.update.status)
+                    .canTransitionTo(SmsJobStatus.fromString(update.status))) {
+                Log.d(TAG, "Dropped stale " + update.status + " for " + update.jobId
+                        + " behind " + previous.update.status);
+                return;
+            }
+            long queuedAt = previous != null ? previous.queuedAt : System.currentTimeMillis();
+            pending.put(update.jobId, new Pending(update, queuedAt));
+
+            if (pending.size() >= maxEntries) {
+                cancelScheduledFlush();
+                scheduler.execute(this::flush);
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Send everything that is currently buffered.
+     */
+    public void flush() {
+        List<Pending> batch;
+        synchronized (pending) {
+            cancelScheduledFlush();
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        long now = System.currentTimeMillis();
+        List<StatusUpdate> updates = new ArrayList<>(batch.size());
+        for (Pending entry : batch) {
+            updates.add(entry.update);
+            addedLatency.record(now - entry.queuedAt);
+        }
+
+        int frames = sink.send(updates);
+
+        framesSentCounter.addAndGet(frames);
+        Log.d(TAG, "Flushed " + updates.size() + " status updates in " + frames + " frames");
+    }
+
+    /**
+     * Flush remaining updates and stop the flush timer.
+     */
+    public void shutdown() {
+        scheduler.execute(this::flush);
+        scheduler.shutdown();
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private static class Pending {
+        final StatusUpdate update;
+        final long queuedAt;
+
+        Pending(StatusUpdate update, long queuedAt) {
+            this.update = update;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    // Destination for flushed updates: sends them in as few frames as the connection allows
+    // and keeps whatever it cannot send. Returns how many frames were actually sent.
+    public interface Sink {
+        int send(List<StatusUpdate> updates);
+    }
+}
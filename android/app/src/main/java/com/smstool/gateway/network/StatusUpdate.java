@@ -0,0 +1,23 @@
+package com.smstool.gateway.network;
+
+/**
+ * A single job status transition to be reported to the server.
+ */
+public class StatusUpdate {
+    public final String jobId;
+    public final String status;
+    public final int attempt;
+    public final Integer errorCode;      // nullable
+    public final String errorMessage;    // nullable
+    public final long timestamp;         // epoch millis of the transition
+
+    public StatusUpdate(String jobId, String status, int attempt,
+                        Integer errorCode, String errorMessage, long timestamp) {
+        this.jobId = jobId;
+        this.status = status;
+        this.attempt = attempt;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.timestamp = timestamp;
+    }
+}
@@ -2,10 +2,9 @@ package com.smstool.gateway.network;
 
 import android.util.Log;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.smstool.gateway.data.model.SmsJobStatus;
+import java.util.concurrent.TimeUnit;
 
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.WebSocket;
@@ -15,16 +14,45 @@ import okio.ByteString;
 /**
  * Wraps OkHttp's WebSocket for persistent connection to the backend.
  * Handles connection lifecycle, message sending, and listener callbacks.
+ * All managers share one OkHttpClient (dispatcher + connection pool), so connect() can be
+ * called again after a close or failure. Client-side pings detect half-open connections:
+ * if a pong does not arrive within one ping interval, OkHttp fails the socket.
  */
 public class WebSocketManager extends WebSocketListener {
     private static final String TAG = "WebSocketManager";
     private static final int NORMAL_CLOSURE_STATUS = 1000;
+    private static final long DEFAULT_HIGH_WATERMARK = 1024 * 1024;  // 1 MB buffered in OkHttp
+    private static final long DEFAULT_LOW_WATERMARK = 256 * 1024;    // 256 KB
+    private static final long DEFAULT_PING_INTERVAL = 10000;         // 10 seconds
+    private static final long DEFAULT_TIMEOUT = 10000;               // connect/handshake/write, 10 seconds
 
-    private WebSocket webSocket;
+    private static final OkHttpClient SHARED_CLIENT = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(2, 5, TimeUnit.MINUTES))
+            .retryOnConnectionFailure(true)
+            .build();
+
+    private volatile WebSocket webSocket;
     private WebSocketListener listener;
-    private boolean isConnecting = false;
+    private volatile boolean isConnecting = false;
+
+    private final OkHttpClient httpClient;
+    private final OutboundQueue outboundQueue;
+
+    public WebSocketManager() {
+        this(DEFAULT_PING_INTERVAL, DEFAULT_TIMEOUT, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK);
+    }
 
-    private final OkHttpClient httpClient = new OkHttpClient();
+    public WebSocketManager(long pingIntervalMillis, long timeoutMillis,
+                            long highWatermark, long lowWatermark) {
+        // newBuilder() keeps the shared dispatcher and connection pool
+        this.httpClient = SHARED_CLIENT.newBuilder()
+                .pingInterval(pingIntervalMillis, TimeUnit.MILLISECONDS)
+                .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.outboundQueue = new OutboundQueue(highWatermark, lowWatermark);
+    }
 
     /**
      * Set the listener for WebSocket events.
@@ -33,10 +61,17 @@ public class WebSocketManager extends WebSocketListener {
         this.listener = listener;
     }
 
+    /**
+     * Set the listener notified when backpressure clears and spilled messages can be resent.
+     */
+    public void setDrainListener(OutboundQueue.DrainListener listener) {
+        outboundQueue.setDrainListener(listener);
+    }
+
     /**
      * Connect to the WebSocket backend.
      */
-    public void connect(String url) {
+    public synchronized void connect(String url) {
         if (isConnecting || webSocket != null) {
             Log.w(TAG, "Already connecting or connected");
             return;
@@ -50,34 +85,67 @@ public class WebSocketManager extends WebSocketListener {
                 .build();
 
         webSocket = httpClient.newWebSocket(request, this);
-        httpClient.dispatcher().executorService().shutdown();
     }
 
     /**
      * Disconnect from the WebSocket.
      */
-    public void disconnect() {
+    public synchronized void disconnect() {
         if (webSocket != null) {
             webSocket.close(NORMAL_CLOSURE_STATUS, "User disconnect");
             webSocket = null;
         }
+        outboundQueue.attach(null);
         isConnecting = false;
     }
 
+    /**
+     * Disconnect and release the outbound queue for good (when the service is destroyed).
+     */
+    public synchronized void close() {
+        disconnect();
+        outboundQueue.close();
+    }
+
     /**
      * Send a JSON message to the server.
+     *
+     * @return false if the message was not accepted (disconnected or backpressured);
+     *         the caller is responsible for keeping it and resending later
      */
-    public void sendMessage(String jsonMessage) {
-        if (webSocket != null) {
-            try {
-                webSocket.send(jsonMessage);
-                Log.d(TAG, "Message sent");
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to send message", e);
-            }
-        } else {
-            Log.w(TAG, "WebSocket not connected, message dropped");
+    public boolean sendMessage(String jsonMessage) {
+        boolean sent = outboundQueue.send(jsonMessage);
+        if (!sent) {
+            Log.w(TAG, "Message not sent (disconnected or backpressured)");
+        }
+        return sent;
+    }
+
+    /**
+     * Send a binary frame to the server.
+     *
+     * @return false if the frame was not accepted (disconnected or backpressured)
+     */
+    public boolean sendBytes(byte[] frame) {
+        boolean sent = outboundQueue.send(ByteString.of(frame));
+        if (!sent) {
+            Log.w(TAG, "Binary message not sent (disconnected or backpressured)");
         }
+        return sent;
+    }
+
+    /**
+     * Send a small control message (device_info, pong), bypassing backpressure.
+     */
+    public boolean sendControlMessage(String jsonMessage) {
+        return outboundQueue.sendControl(jsonMessage);
+    }
+
+    /**
+     * Send a small binary control frame, bypassing backpressure.
+     */
+    public boolean sendControlBytes(byte[] frame) {
+        return outboundQueue.sendControl(ByteString.of(frame));
     }
 
     /**
@@ -87,9 +155,21 @@ public class WebSocketManager extends WebSocketListener {
         return webSocket != null && !isConnecting;
     }
 
+    /**
+     * Check whether a callback comes from the current socket rather than one already replaced.
+     */
+    private boolean isCurrent(WebSocket webSocket) {
+        return webSocket == this.webSocket;
+    }
+
     @Override
     public void onOpen(WebSocket webSocket, okhttp3.Response response) {
+        if (!isCurrent(webSocket)) {
+            webSocket.cancel();
+            return;
+        }
         isConnecting = false;
+        outboundQueue.attach(webSocket);
         Log.i(TAG, "WebSocket opened");
         if (listener != null) {
             listener.onOpen(webSocket, response);
@@ -123,8 +203,14 @@ public class WebSocketManager extends WebSocketListener {
 
     @Override
     public void onClosed(WebSocket webSocket, int code, String reason) {
-        isConnecting = false;
-        this.webSocket = null;
+        synchronized (this) {
+            if (!isCurrent(webSocket)) {
+                return;
+            }
+            isConnecting = false;
+            this.webSocket = null;
+            outboundQueue.attach(null);
+        }
         Log.i(TAG, "WebSocket closed: " + code + " " + reason);
         if (listener != null) {
             listener.onClosed(webSocket, code, reason);
@@ -133,8 +219,14 @@ public class WebSocketManager extends WebSocketListener {
 
     @Override
     public void onFailure(WebSocket webSocket, Throwable t, okhttp3.Response response) {
-        isConnecting = false;
-        this.webSocket = null;
+        synchronized (this) {
+            if (!isCurrent(webSocket)) {
+                return;
+            }
+            isConnecting = false;
+            this.webSocket = null;
+            outboundQueue.attach(null);
+        }
         Log.e(TAG, "WebSocket failure", t);
         if (listener != null) {
             listener.onFailure(webSocket, t, response);
@@ -0,0 +1,20 @@
+package com.smstool.gateway.network.message;
+
+/**
+ * Server → Android: runtime configuration update. Absent fields keep their current value.
+ */
+public class ConfigMessage extends InboundMessage {
+    public final Integer sendBurst;          // nullable, messages per SIM sent back-to-back
+    public final Integer sendRatePerMinute;  // nullable, sustained messages per SIM per minute
+    public final Integer sendWindow;         // nullable, max sends awaiting SMS_SENT
+    public final Boolean statusBatch;        // nullable, server accepts status_batch frames
+
+    public ConfigMessage(String messageId, Integer sendBurst, Integer sendRatePerMinute,
+                         Integer sendWindow, Boolean statusBatch) {
+        super(messageId);
+        this.sendBurst = sendBurst;
+        this.sendRatePerMinute = sendRatePerMinute;
+        this.sendWindow = sendWindow;
+        this.statusBatch = statusBatch;
+    }
+}
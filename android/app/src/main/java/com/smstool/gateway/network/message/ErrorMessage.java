@@ -0,0 +1,15 @@
+package com.smstool.gateway.network.message;
+
+/**
+ * Server → Android: protocol error.
+ */
+public class ErrorMessage extends InboundMessage {
+    public final String code;    // nullable
+    public final String detail;  // nullable
+
+    public ErrorMessage(String messageId, String code, String detail) {
+        super(messageId);
+        this.code = code;
+        this.detail = detail;
+    }
+}
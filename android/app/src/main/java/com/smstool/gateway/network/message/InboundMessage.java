@@ -0,0 +1,12 @@
+package com.smstool.gateway.network.message;
+
+/**
+ * Base type for decoded messages received from the server.
+ */
+public abstract class InboundMessage {
+    public final String messageId;  // nullable
+
+    protected InboundMessage(String messageId) {
+        this.messageId = messageId;
+    }
+}
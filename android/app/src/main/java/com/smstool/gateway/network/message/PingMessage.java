@@ -0,0 +1,10 @@
+package com.smstool.gateway.network.message;
+
+/**
+ * Server → Android: keepalive ping.
+ */
+public class PingMessage extends InboundMessage {
+    public PingMessage(String messageId) {
+        super(messageId);
+    }
+}
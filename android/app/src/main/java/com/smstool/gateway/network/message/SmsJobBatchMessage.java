@@ -0,0 +1,15 @@
+package com.smstool.gateway.network.message;
+
+import java.util.List;
+
+/**
+ * Server → Android: dispatch several SMS jobs in one frame.
+ */
+public class SmsJobBatchMessage extends InboundMessage {
+    public final List<SmsJobMessage> jobs;
+
+    public SmsJobBatchMessage(String messageId, List<SmsJobMessage> jobs) {
+        super(messageId);
+        this.jobs = jobs;
+    }
+}
@@ -0,0 +1,34 @@
+package com.smstool.gateway.network.message;
+
+/**
+ * Server → Android: dispatch an SMS job.
+ * Also used for the individual entries of an sms_job_batch.
+ */
+public class SmsJobMessage extends InboundMessage {
+    public final String jobId;
+    public final String to;
+    public final String body;
+    public final Integer maxRetries;  // nullable
+    public final Long seq;            // server sequence number (nullable for servers without resume)
+    public final Integer priority;    // nullable, higher is more urgent
+    public final boolean transliterate;  // opt-in: map the body to GSM-7 if that saves segments
+
+    public SmsJobMessage(String messageId, String jobId, String to, String body,
+                         Integer maxRetries, Long seq, Integer priority, boolean transliterate) {
+        super(messageId);
+        this.jobId = jobId;
+        this.to = to;
+        this.body = body;
+        this.maxRetries = maxRetries;
+        this.seq = seq;
+        this.priority = priority;
+        this.transliterate = transliterate;
+    }
+
+    /**
+     * Check that all fields required to send the SMS are present.
+     */
+    public boolean isComplete() {
+        return jobId != null && to != null && body != null;
+    }
+}
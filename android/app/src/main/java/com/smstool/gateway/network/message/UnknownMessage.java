@@ -0,0 +1,13 @@
+package com.smstool.gateway.network.message;
+
+/**
+ * A message with a type this client does not handle.
+ */
+public class UnknownMessage extends InboundMessage {
+    public final String type;  // nullable
+
+    public UnknownMessage(String messageId, String type) {
+        super(messageId);
+        this.type = type;
+    }
+}
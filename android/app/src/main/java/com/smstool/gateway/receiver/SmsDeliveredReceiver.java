@@ -8,17 +8,20 @@ import android.util.Log;
 
 import com.smstool.gateway.data.model.SmsJobStatus;
 import com.smstool.gateway.data.repository.SmsJobRepository;
+import com.smstool.gateway.service.SmsSender;
 
 /**
  * BroadcastReceiver for SMS delivery reports.
  * Called when the SMS is delivered to the recipient device.
  * Note: Not all carriers provide delivery reports.
+ * Multipart jobs are marked delivered once every part has been delivered.
  */
 public class SmsDeliveredReceiver extends BroadcastReceiver {
     private static final String TAG = "SmsDeliveredReceiver";
     public static final String ACTION_SMS_DELIVERED = "com.smstool.gateway.action.SMS_DELIVERED";
 
     private SmsJobRepository repository;
+    private SmsStatusListener statusListener;
 
     public SmsDeliveredReceiver() {
     }
@@ -27,13 +30,20 @@ public class SmsDeliveredReceiver extends BroadcastReceiver {
         this.repository = repository;
     }
 
+    /**
+     * Set a listener to be notified of status transitions (e.g. for reporting to the server).
+     */
+    public void setStatusListener(SmsStatusListener listener) {
+        this.statusListener = listener;
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
         if (repository == null) {
             repository = new SmsJobRepository(context);
         }
 
-        String jobId = intent.getStringExtra("job_id");
+        String jobId = intent.getStringExtra(SmsSender.EXTRA_JOB_ID);
         if (jobId == null) {
             Log.w(TAG, "Received SMS_DELIVERED intent without job_id");
             return;
@@ -42,20 +52,36 @@ public class SmsDeliveredReceiver extends BroadcastReceiver {
         int resultCode = getResultCode();
 
         if (resultCode == Activity.RESULT_OK) {
-            Log.i(TAG, "SMS delivered for job: " + jobId);
-            repository.updateJobStatus(
-                    jobId,
-                    SmsJobStatus.DELIVERED,
-                    null,
-                    null,
-                    () -> {
-                        repository.logEvent("INFO", "✓ SMS delivered to recipient");
+            int partIndex = intent.getIntExtra(SmsSender.EXTRA_PART_INDEX, -1);
+            if (partIndex < 0) {
+                handleDelivered(jobId);
+            } else {
+                repository.recordPartDelivered(jobId, partIndex, outcome -> {
+                    if (outcome == SmsJobRepository.PartsOutcome.DELIVERED) {
+                        handleDelivered(jobId);
                     }
-            );
+                });
+            }
         } else {
             Log.w(TAG, "SMS delivery report failed for job: " + jobId + ", code: " + resultCode);
             // Still keep status as SENT (delivery report failed, but SMS was likely sent)
             repository.logEvent("WARN", "SMS sent but delivery report failed");
         }
     }
+
+    private void handleDelivered(String jobId) {
+        Log.i(TAG, "SMS delivered for job: " + jobId);
+        repository.updateJobStatus(
+                jobId,
+                SmsJobStatus.DELIVERED,
+                null,
+                null,
+                () -> {
+                    repository.logEvent("INFO", "✓ SMS delivered to recipient");
+                    if (statusListener != null) {
+                        statusListener.onStatusChanged(jobId, SmsJobStatus.DELIVERED, 0, null, null);
+                    }
+                }
+        );
+    }
 }
@@ -10,16 +10,23 @@ import android.util.Log;
 import com.smstool.gateway.data.db.SmsJobEntity;
 import com.smstool.gateway.data.model.SmsJobStatus;
 import com.smstool.gateway.data.repository.SmsJobRepository;
+import com.smstool.gateway.service.RetryScheduler;
+import com.smstool.gateway.service.SmsSender;
 
 /**
  * BroadcastReceiver for SMS_SENT callbacks from SmsManager.
  * Called when the SMS message is sent (accepted by the network).
+ * Multipart jobs report once per part; the job changes status, and frees its SIM and send
+ * window slot, once all parts have reported.
  */
 public class SmsSentReceiver extends BroadcastReceiver {
     private static final String TAG = "SmsSentReceiver";
     public static final String ACTION_SMS_DELIVERED = "com.smstool.gateway.action.SMS_DELIVERED";
 
     private SmsJobRepository repository;
+    private SmsStatusListener statusListener;
+    private SendResultListener sendResultListener;
+    private RetryScheduler retryScheduler;
 
     public SmsSentReceiver() {
     }
@@ -28,13 +35,35 @@ public class SmsSentReceiver extends BroadcastReceiver {
         this.repository = repository;
     }
 
+    /**
+     * Set a listener to be notified of status transitions (e.g. for reporting to the server).
+     */
+    public void setStatusListener(SmsStatusListener listener) {
+        this.statusListener = listener;
+    }
+
+    /**
+     * Set a listener to be notified once a job's send has finished: as soon as the broadcast
+     * arrives for a single-part job, and once every part has reported for a multipart job.
+     */
+    public void setSendResultListener(SendResultListener listener) {
+        this.sendResultListener = listener;
+    }
+
+    /**
+     * Set the scheduler that fires retries when they are due.
+     */
+    public void setRetryScheduler(RetryScheduler retryScheduler) {
+        this.retryScheduler = retryScheduler;
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
         if (repository == null) {
             repository = new SmsJobRepository(context);
         }
 
-        String jobId = intent.getStringExtra("job_id");
+        String jobId = intent.getStringExtra(SmsSender.EXTRA_JOB_ID);
         if (jobId == null) {
             Log.w(TAG, "Received SMS_SENT intent without job_id");
             return;
@@ -42,48 +71,106 @@ public class SmsSentReceiver extends BroadcastReceiver {
 
         // Get the result code from SmsManager
         int resultCode = getResultCode();
+        int partIndex = intent.getIntExtra(SmsSender.EXTRA_PART_INDEX, -1);
+        if (partIndex < 0) {
+            // Before any database work
+            notifySendResult(jobId, resultCode);
+            if (resultCode == Activity.RESULT_OK) {
+                handleSent(jobId);
+            } else {
+                handleFailure(jobId, resultCode, getErrorMessage(resultCode));
+            }
+            return;
+        }
+
+        // Multipart: aggregate the part results first
+        boolean success = resultCode == Activity.RESULT_OK;
+        repository.recordPartSent(jobId, partIndex, success, success ? null : resultCode, outcome -> {
+            if (outcome == SmsJobRepository.PartsOutcome.SENT) {
+                notifySendResult(jobId, Activity.RESULT_OK);
+                handleSent(jobId);
+            } else if (outcome == SmsJobRepository.PartsOutcome.FAILED) {
+                int errorCode = success ? SmsManager.RESULT_ERROR_GENERIC_FAILURE : resultCode;
+                notifySendResult(jobId, errorCode);
+                handleFailure(jobId, errorCode, "Some parts failed (last: " + getErrorMessage(errorCode) + ")");
+            }
+        });
+    }
 
-        if (resultCode == Activity.RESULT_OK) {
-            Log.i(TAG, "SMS sent successfully for job: " + jobId);
-            repository.updateJobStatus(
-                    jobId,
-                    SmsJobStatus.SENT,
-                    null,
-                    null,
-                    () -> {
-                        repository.logEvent("INFO", "✓ SMS sent to recipient (waiting for delivery)");
-                    }
-            );
-        } else {
-            // Handle error
-            String errorMessage = getErrorMessage(resultCode);
-            Log.e(TAG, "SMS send failed for job " + jobId + ": " + errorMessage);
-
-            // Get the job to check retry count
-            repository.getJob(jobId, job -> {
-                if (job != null) {
-                    if (job.attempts < job.maxRetries) {
-                        // Schedule retry
-                        long backoffDelay = calculateBackoff(job.attempts);
-                        repository.scheduleRetry(jobId, job.attempts + 1, backoffDelay, () -> {
-                            repository.logEvent("WARN",
-                                    "✗ Send failed, retry " + (job.attempts + 1) + "/" + job.maxRetries);
-                        });
-                    } else {
-                        // All retries exhausted
-                        repository.updateJobStatus(
-                                jobId,
-                                SmsJobStatus.FAILED_PERMANENT,
-                                resultCode,
-                                errorMessage,
-                                () -> {
-                                    repository.logEvent("ERROR",
-                                            "✗ Send failed (final) - " + errorMessage);
-                                }
-                        );
-                    }
+    /**
+     * Handle a send whose SMS_SENT broadcast never arrived (called when its send window slot
+     * times out). The job is retried, or failed for good once its retries are used up; for a
+     * multipart job only the parts that never reported are resent. A late broadcast can still
+     * mark the job sent.
+     */
+    public void handleTimeout(String jobId) {
+        int errorCode = SmsManager.RESULT_ERROR_GENERIC_FAILURE;
+        repository.failUnreportedParts(jobId, errorCode,
+                () -> handleFailure(jobId, errorCode, "No SMS_SENT result"));
+    }
+
+    private void notifySendResult(String jobId, int resultCode) {
+        if (sendResultListener != null) {
+            sendResultListener.onSendResult(jobId, resultCode);
+        }
+    }
+
+    private void handleSent(String jobId) {
+        Log.i(TAG, "SMS sent successfully for job: " + jobId);
+        repository.updateJobStatus(
+                jobId,
+                SmsJobStatus.SENT,
+                null,
+                null,
+                () -> {
+                    repository.logEvent("INFO", "✓ SMS sent to recipient (waiting for delivery)");
+                    notifyStatus(jobId, SmsJobStatus.SENT, 0, null, null);
                 }
-            });
+        );
+    }
+
+    private void handleFailure(String jobId, int resultCode, String errorMessage) {
+        Log.e(TAG, "SMS send failed for job " + jobId + ": " + errorMessage);
+
+        // Get the job to check retry count
+        repository.getJob(jobId, job -> {
+            if (job != null) {
+                if (job.attempts < job.maxRetries) {
+                    // Schedule retry (a multipart retry resends only the failed parts)
+                    long backoffDelay = calculateBackoff(job.attempts);
+                    long retryAt = System.currentTimeMillis() + backoffDelay;
+                    repository.scheduleRetry(jobId, job.attempts + 1, backoffDelay, () -> {
+                        if (retryScheduler != null) {
+                            retryScheduler.schedule(jobId, retryAt);
+                        }
+                        repository.logEvent("WARN",
+                                "✗ Send failed, retry " + (job.attempts + 1) + "/" + job.maxRetries);
+                        notifyStatus(jobId, SmsJobStatus.FAILED_RETRYING, job.attempts + 1,
+                                resultCode, errorMessage);
+                    });
+                } else {
+                    // All retries exhausted
+                    repository.updateJobStatus(
+                            jobId,
+                            SmsJobStatus.FAILED_PERMANENT,
+                            resultCode,
+                            errorMessage,
+                            () -> {
+                                repository.logEvent("ERROR",
+                                        "✗ Send failed (final) - " + errorMessage);
+                                notifyStatus(jobId, SmsJobStatus.FAILED_PERMANENT, job.attempts,
+                                        resultCode, errorMessage);
+                            }
+                    );
+                }
+            }
+        });
+    }
+
+    private void notifyStatus(String jobId, SmsJobStatus status, int attempt,
+                              Integer errorCode, String errorMessage) {
+        if (statusListener != null) {
+            statusListener.onStatusChanged(jobId, status, attempt, errorCode, errorMessage);
         }
     }
 
@@ -116,4 +203,9 @@ public class SmsSentReceiver extends BroadcastReceiver {
                 return "Unknown error (" + resultCode + ")";
         }
     }
+
+    // Callback for raw send results (e.g. to free the SIM the job was sent on)
+    public interface SendResultListener {
+        void onSendResult(String jobId, int resultCode);
+    }
 }
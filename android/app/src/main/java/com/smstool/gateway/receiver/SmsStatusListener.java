@@ -0,0 +1,12 @@
+package com.smstool.gateway.receiver;
+
+import com.smstool.gateway.data.model.SmsJobStatus;
+
+/**
+ * Callback for job status transitions observed by the SMS broadcast receivers.
+ * Invoked after the new status has been written to the local queue.
+ */
+public interface SmsStatusListener {
+    void onStatusChanged(String jobId, SmsJobStatus status, int attempt,
+                         Integer errorCode, String errorMessage);
+}
@@ -0,0 +1,97 @@
+package com.smstool.gateway.service;
+
+import com.smstool.gateway.data.db.SmsJobEntity;
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory priority queue in front of SmsSender.
+ * Jobs are released highest priority first (then oldest first), and only while fewer than
+ * `maxStaged` jobs are between here and their SMS_SENT result. Keeping the downstream pacer and
+ * send window queues short means an urgent job (e.g. an OTP) only ever waits behind a handful
+ * of sends, not behind the whole backlog.
+ */
+public class DispatchQueue {
+    private final SmsSender smsSender;
+    private final int maxStaged;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Set<String> staged = new HashSet<>();
+    private final Set<String> pending = new HashSet<>();  // job ids queued or staged
+    private long nextOrder = 0;
+
+    private final LatencyHistogram waitTime = GatewayMetrics.histogram("dispatch.wait");
+    private final LatencyHistogram urgentWaitTime = GatewayMetrics.histogram("dispatch.wait_urgent");
+
+    public DispatchQueue(SmsSender smsSender, int maxStaged) {
+        this.smsSender = smsSender;
+        this.maxStaged = maxStaged;
+        GatewayMetrics.gauge("dispatch.queued", () -> {
+            synchronized (this) {
+                return queue.size();
+            }
+        });
+    }
+
+    /**
+     * Queue a job for sending. A job that is already queued or staged is ignored.
+     */
+    public synchronized void submit(SmsJobEntity job, SmsSender.SmsSenderCallback callback) {
+        if (!pending.add(job.jobId)) {
+            return;
+        }
+        queue.add(new Entry(job, callback, nextOrder++));
+        dispatch();
+    }
+
+    /**
+     * Called when a job has left the send window (acknowledged, timed out or aborted).
+     */
+    public synchronized void release(String jobId) {
+        if (staged.remove(jobId)) {
+            pending.remove(jobId);
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        while (staged.size() < maxStaged && !queue.isEmpty()) {
+            Entry entry = queue.poll();
+            long waited = System.currentTimeMillis() - entry.queuedAt;
+            waitTime.record(waited);
+            if (entry.job.priority > 0) {
+                urgentWaitTime.record(waited);
+            }
+            staged.add(entry.job.jobId);
+            smsSender.sendSms(entry.job, entry.callback);
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        final SmsJobEntity job;
+        final SmsSender.SmsSenderCallback callback;
+        final long order;
+        final long queuedAt = System.currentTimeMillis();
+
+        Entry(SmsJobEntity job, SmsSender.SmsSenderCallback callback, long order) {
+            this.job = job;
+            this.callback = callback;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (job.priority != other.job.priority) {
+                return Integer.compare(other.job.priority, job.priority);
+            }
+            if (job.createdAt != other.job.createdAt) {
+                return Long.compare(job.createdAt, other.job.createdAt);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
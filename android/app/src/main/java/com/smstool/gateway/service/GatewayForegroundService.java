@@ -1,7 +1,9 @@
 package com.smstool.gateway.service;
 
+import android.app.Activity;
 import android.app.Service;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
@@ -9,18 +11,39 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import androidx.core.content.ContextCompat;
+
 import com.smstool.gateway.data.db.SmsJobEntity;
 import com.smstool.gateway.data.model.SmsJobStatus;
 import com.smstool.gateway.data.prefs.PrefsManager;
 import com.smstool.gateway.data.repository.SmsJobRepository;
+import com.smstool.gateway.network.BinaryCodec;
+import com.smstool.gateway.network.MessageDecoder;
 import com.smstool.gateway.network.MessageParser;
+import com.smstool.gateway.network.MessageWriter;
+import com.smstool.gateway.network.ReconnectScheduler;
+import com.smstool.gateway.network.SequenceAllocator;
+import com.smstool.gateway.network.StatusBatcher;
+import com.smstool.gateway.network.StatusUpdate;
 import com.smstool.gateway.network.WebSocketManager;
+import com.smstool.gateway.network.message.ConfigMessage;
+import com.smstool.gateway.network.message.ErrorMessage;
+import com.smstool.gateway.network.message.InboundMessage;
+import com.smstool.gateway.network.message.PingMessage;
+import com.smstool.gateway.network.message.SmsJobBatchMessage;
+import com.smstool.gateway.network.message.SmsJobMessage;
+import com.smstool.gateway.network.message.UnknownMessage;
 import com.smstool.gateway.receiver.SmsDeliveredReceiver;
 import com.smstool.gateway.receiver.SmsSentReceiver;
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.GsmTransliterator;
+import com.smstool.gateway.util.SmsEncoder;
 import com.smstool.gateway.util.NotificationHelper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
 import okio.ByteString;
@@ -29,7 +52,7 @@ import okio.ByteString;
  * Foreground Service that maintains the WebSocket connection to the backend.
  * Core responsibilities:
  * - Establish and maintain WebSocket connection
- * - Handle reconnection with exponential backoff
+ * - Handle reconnection (network-aware, with jittered backoff)
  * - Dispatch jobs to backend for SMS sending
  * - Handle incoming messages (sms_job, ping, etc.)
  * - Manage SMS sending via SmsSender
@@ -43,15 +66,54 @@ public class GatewayForegroundService extends Service {
     private SmsJobRepository repository;
     private WebSocketManager webSocketManager;
     private SmsSender smsSender;
+    private DispatchQueue dispatchQueue;
+    private RetryScheduler retryScheduler;
+    private SimDispatcher simDispatcher;
+    private SendPacer sendPacer;
+    private SendWindow sendWindow;
+    private StatusBatcher statusBatcher;
+    private SmsSentReceiver sentReceiver;
+    private SmsDeliveredReceiver deliveredReceiver;
     private Handler mainHandler;
+    private ReconnectScheduler reconnectScheduler;
+    private SequenceAllocator statusSequence;
+    private PipelineStage<Frame> decodeStage;
+    private PipelineStage<Intake> persistStage;
+    private PipelineStage<SmsJobEntity> scheduleStage;
+    private PipelineStage<SmsJobEntity> reportStage;
 
     private ServiceBinder binder = new ServiceBinder();
-    private int reconnectAttempt = 0;
-    private static final long INITIAL_RECONNECT_DELAY = 5000;  // 5 seconds
-    private static final long MAX_RECONNECT_DELAY = 60000;    // 60 seconds
+    private volatile boolean binaryProtocol = false;  // set once the server sends a binary frame
+    private volatile boolean statusBatchAccepted = false;  // set by a config message with status_batch
+    private volatile boolean reportsSpilled = false;  // status reports waiting in Room for a drain
+    // Guards the spill bookkeeping below, so reportsSpilled is only cleared once Room has every mark
+    private final Object spillLock = new Object();
+    private long spillGeneration = 0;      // bumped by every spill
+    private int spillsUnmarked = 0;        // spills whose pending-report marks have not committed yet
+    private boolean flushAfterMark = false;  // a flush found nothing while marks were in flight
+    private static final long STATUS_FLUSH_WINDOW = 250;      // milliseconds
+    private static final int STATUS_FLUSH_MAX_ENTRIES = 200;
+    private static final int DISPATCH_MAX_STAGED = 16;         // jobs between the dispatch queue and SMS_SENT
+    private static final long SEND_ACK_TIMEOUT = 60000;        // 60 seconds without SMS_SENT
+    private static final long SEND_TARGET_ACK_LATENCY = 10000; // slower acks shrink the send window
+    private static final int DECODE_QUEUE_CAPACITY = 256;      // frames handed off by the socket reader
+    private static final int PERSIST_QUEUE_CAPACITY = 1000;    // decoded jobs waiting for Room; full blocks the socket reader
+    private static final int PERSIST_MAX_BATCH = 200;          // jobs inserted per transaction
+    private static final int SCHEDULE_QUEUE_CAPACITY = 1000;
+    private static final int REPORT_QUEUE_CAPACITY = 256;
+    private static final int REPORT_MAX_BATCH = 64;
+    private static final long METRICS_LOG_INTERVAL = 60000;    // 1 minute
 
     private ServiceStateListener stateListener;
 
+    private final Runnable metricsLogger = new Runnable() {
+        @Override
+        public void run() {
+            logMetrics();
+            mainHandler.postDelayed(this, METRICS_LOG_INTERVAL);
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -60,8 +122,51 @@ public class GatewayForegroundService extends Service {
         prefsManager = new PrefsManager(this);
         repository = new SmsJobRepository(this);
         webSocketManager = new WebSocketManager();
-        smsSender = new SmsSender(this, repository);
+        simDispatcher = new SimDispatcher(this);
+        simDispatcher.start();
+        sendPacer = new SendPacer(prefsManager.getSendBurst(), prefsManager.getSendRatePerMinute());
+        sendWindow = new SendWindow(prefsManager.getSendWindow(), SEND_ACK_TIMEOUT,
+                SEND_TARGET_ACK_LATENCY);
+        smsSender = new SmsSender(this, repository, simDispatcher, sendPacer, sendWindow,
+                new SequenceAllocator(prefsManager::getIntentIdReserved, prefsManager::setIntentIdReserved));
+        dispatchQueue = new DispatchQueue(smsSender, DISPATCH_MAX_STAGED);
+        sendWindow.setReleaseListener(dispatchQueue::release);
+        retryScheduler = new RetryScheduler(this, this::retryJob);
+        retryScheduler.start();
+        statusSequence = new SequenceAllocator(prefsManager::getStatusSeqReserved,
+                prefsManager::setStatusSeqReserved);
+        statusBatcher = new StatusBatcher(
+                this::sendStatusUpdates,
+                STATUS_FLUSH_WINDOW,
+                STATUS_FLUSH_MAX_ENTRIES
+        );
+        // decode -> persist -> schedule -> dispatch queue / send -> report
+        reportStage = new PipelineStage<>("report", REPORT_QUEUE_CAPACITY, REPORT_MAX_BATCH,
+                this::reportSending);
+        scheduleStage = new PipelineStage<>("schedule", SCHEDULE_QUEUE_CAPACITY, PERSIST_MAX_BATCH,
+                jobs -> {
+                    for (SmsJobEntity job : jobs) {
+                        sendSmsJob(job);
+                    }
+                });
+        persistStage = new PipelineStage<>("persist", PERSIST_QUEUE_CAPACITY, PERSIST_MAX_BATCH,
+                this::persistJobs);
+        decodeStage = new PipelineStage<>("decode", DECODE_QUEUE_CAPACITY, 1, frames -> {
+            for (Frame frame : frames) {
+                if (frame.text != null) {
+                    handleMessage(frame.text);
+                } else {
+                    handleBinaryMessage(frame.bytes);
+                }
+            }
+        });
         mainHandler = new Handler(Looper.getMainLooper());
+        mainHandler.postDelayed(metricsLogger, METRICS_LOG_INTERVAL);
+        reconnectScheduler = new ReconnectScheduler(this, mainHandler, this::connectToBackend);
+        reconnectScheduler.start();
+
+        // Resend spilled status reports once the outbound queue drains
+        webSocketManager.setDrainListener(this::flushPendingReports);
 
         // Register broadcast receivers dynamically
         registerBroadcastReceivers();
@@ -94,8 +199,36 @@ public class GatewayForegroundService extends Service {
     @Override
     public void onDestroy() {
         Log.i(TAG, "Service destroyed");
+        if (mainHandler != null) {
+            mainHandler.removeCallbacks(metricsLogger);
+            logMetrics();
+        }
+        if (decodeStage != null) {
+            decodeStage.shutdown();
+            persistStage.shutdown();
+            scheduleStage.shutdown();
+            reportStage.shutdown();
+        }
+        if (statusBatcher != null) {
+            statusBatcher.shutdown();
+        }
+        if (reconnectScheduler != null) {
+            reconnectScheduler.stop();
+        }
+        if (simDispatcher != null) {
+            simDispatcher.stop();
+        }
+        if (sendPacer != null) {
+            sendPacer.shutdown();
+        }
+        if (sendWindow != null) {
+            sendWindow.shutdown();
+        }
+        if (retryScheduler != null) {
+            retryScheduler.stop();
+        }
         if (webSocketManager != null) {
-            webSocketManager.disconnect();
+            webSocketManager.close();
         }
         prefsManager.setServiceRunning(false);
         unregisterBroadcastReceivers();
@@ -106,12 +239,77 @@ public class GatewayForegroundService extends Service {
      * Register broadcast receivers for SMS sent/delivered.
      */
     private void registerBroadcastReceivers() {
-        // Receivers will be dynamically registered by SmsSender
-        Log.d(TAG, "Broadcast receivers will be registered by SmsSender");
+        sentReceiver = new SmsSentReceiver(repository);
+        sentReceiver.setStatusListener(this::reportStatus);
+        sentReceiver.setRetryScheduler(retryScheduler);
+        // Called after the last part of a multipart job, so its SIM and window slot stay held
+        sentReceiver.setSendResultListener((jobId, resultCode) -> {
+            simDispatcher.release(jobId);
+            sendWindow.acknowledge(jobId, resultCode == Activity.RESULT_OK);
+        });
+        // A send that never got SMS_SENT frees its SIM and is retried instead of staying sending
+        SmsSentReceiver receiver = sentReceiver;
+        sendWindow.setTimeoutListener(jobId -> {
+            simDispatcher.release(jobId);
+            receiver.handleTimeout(jobId);
+        });
+        ContextCompat.registerReceiver(this, sentReceiver,
+                new IntentFilter(SmsSender.ACTION_SMS_SENT), ContextCompat.RECEIVER_NOT_EXPORTED);
+
+        deliveredReceiver = new SmsDeliveredReceiver(repository);
+        deliveredReceiver.setStatusListener(this::reportStatus);
+        ContextCompat.registerReceiver(this, deliveredReceiver,
+                new IntentFilter(SmsDeliveredReceiver.ACTION_SMS_DELIVERED),
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+
+        Log.d(TAG, "Broadcast receivers registered");
     }
 
     private void unregisterBroadcastReceivers() {
         Log.d(TAG, "Unregistering broadcast receivers");
+        if (sentReceiver != null) {
+            unregisterReceiver(sentReceiver);
+            sentReceiver = null;
+        }
+        if (deliveredReceiver != null) {
+            unregisterReceiver(deliveredReceiver);
+            deliveredReceiver = null;
+        }
+    }
+
+    /**
+     * Queue a job status transition for (batched) reporting to the server.
+     */
+    private void reportStatus(String jobId, SmsJobStatus status, int attempt,
+                              Integer errorCode, String errorMessage) {
+        statusBatcher.submit(new StatusUpdate(
+                jobId,
+                status.getValue(),
+                attempt,
+                errorCode,
+                errorMessage,
+                System.currentTimeMillis()
+        ));
+    }
+
+    /**
+     * Write a snapshot of all gateway metrics to logcat, a few lines of name=value pairs.
+     */
+    private void logMetrics() {
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Long> metric : GatewayMetrics.snapshot().entrySet()) {
+            if (line.length() > 900) {
+                Log.i(TAG, "Metrics: " + line);
+                line.setLength(0);
+            }
+            if (line.length() > 0) {
+                line.append(", ");
+            }
+            line.append(metric.getKey()).append('=').append(metric.getValue());
+        }
+        if (line.length() > 0) {
+            Log.i(TAG, "Metrics: " + line);
+        }
     }
 
     /**
@@ -141,18 +339,22 @@ public class GatewayForegroundService extends Service {
             @Override
             public void onOpen(WebSocket webSocket, okhttp3.Response response) {
                 Log.i(TAG, "WebSocket connected");
-                reconnectAttempt = 0;
+                reconnectScheduler.onConnected();
+                binaryProtocol = false;
+                statusBatchAccepted = false;
                 updateNotification("Connected");
                 repository.logEvent("INFO", "✓ Connected to server");
 
-                // Send device info
+                // Send device info (with resume state so the server only replays missed jobs)
                 String deviceInfo = MessageParser.createDeviceInfoMessage(
                         prefsManager.getDeviceId(),
                         android.os.Build.MODEL,
                         String.valueOf(android.os.Build.VERSION.SDK_INT),
-                        "1.0.0"
+                        "1.0.0",
+                        prefsManager.getLastJobSeq(),
+                        statusSequence.last()
                 );
-                webSocketManager.sendMessage(deviceInfo);
+                webSocketManager.sendControlMessage(deviceInfo);
 
                 // Flush any pending status reports
                 flushPendingReports();
@@ -164,13 +366,35 @@ public class GatewayForegroundService extends Service {
 
             @Override
             public void onMessage(WebSocket webSocket, String text) {
-                handleMessage(text);
+                // Runs on OkHttp's reader thread: answer pings here, hand everything else off
+                PingMessage ping = MessageDecoder.peekPing(text);
+                if (ping != null) {
+                    handlePing(ping);
+                } else {
+                    decodeStage.submit(new Frame(text, null));
+                }
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, ByteString bytes) {
+                // The server only sends binary frames after seeing our codecs in device_info,
+                // so the first one switches our outgoing frames to the binary codec as well
+                if (!binaryProtocol) {
+                    binaryProtocol = true;
+                    Log.i(TAG, "Server switched to " + BinaryCodec.CODEC_NAME);
+                }
+                byte[] frame = bytes.toByteArray();
+                PingMessage ping = BinaryCodec.peekPing(frame);
+                if (ping != null) {
+                    handlePing(ping);
+                } else {
+                    decodeStage.submit(new Frame(null, frame));
+                }
             }
 
             @Override
             public void onClosing(WebSocket webSocket, int code, String reason) {
                 Log.i(TAG, "WebSocket closing: " + code);
-                webSocket.close(1000, null);
             }
 
             @Override
@@ -202,72 +426,169 @@ public class GatewayForegroundService extends Service {
     }
 
     /**
-     * Handle incoming WebSocket message from server.
+     * Handle incoming WebSocket message from server (on the decode stage).
      */
     private void handleMessage(String jsonText) {
         try {
-            String messageType = MessageParser.getMessageType(jsonText);
-            Log.d(TAG, "Received message type: " + messageType);
-
-            if ("sms_job".equals(messageType)) {
-                handleSmsJob(jsonText);
-            } else if ("ping".equals(messageType)) {
-                handlePing(jsonText);
-            } else if ("error".equals(messageType)) {
-                handleError(jsonText);
-            } else {
-                Log.w(TAG, "Unknown message type: " + messageType);
-            }
+            dispatchMessage(MessageDecoder.decode(jsonText));
         } catch (Exception e) {
             Log.e(TAG, "Error handling message", e);
             repository.logEvent("ERROR", "✗ Message parsing error");
         }
     }
 
+    /**
+     * Handle incoming binary WebSocket frame from server (on the decode stage).
+     */
+    private void handleBinaryMessage(byte[] frame) {
+        try {
+            dispatchMessage(BinaryCodec.decode(frame));
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling binary message", e);
+            repository.logEvent("ERROR", "✗ Message parsing error");
+        }
+    }
+
+    /**
+     * Route a decoded message to its handler.
+     */
+    private void dispatchMessage(InboundMessage message) throws Exception {
+        if (message instanceof SmsJobMessage) {
+            handleSmsJob((SmsJobMessage) message);
+        } else if (message instanceof SmsJobBatchMessage) {
+            handleSmsJobBatch((SmsJobBatchMessage) message);
+        } else if (message instanceof PingMessage) {
+            handlePing((PingMessage) message);
+        } else if (message instanceof ErrorMessage) {
+            handleError((ErrorMessage) message);
+        } else if (message instanceof ConfigMessage) {
+            handleConfig((ConfigMessage) message);
+        } else {
+            Log.w(TAG, "Unknown message type: " + ((UnknownMessage) message).type);
+        }
+    }
+
     /**
      * Handle an sms_job message from the server.
+     * Blocks while the persist stage is full.
      */
-    private void handleSmsJob(String jsonText) throws Exception {
-        JsonObject json = MessageParser.parseMessage(jsonText);
-        String jobId = MessageParser.getStringField(json, "job_id", null);
-        String to = MessageParser.getStringField(json, "to", null);
-        String body = MessageParser.getStringField(json, "body", null);
-        Integer maxRetries = MessageParser.getIntField(json, "max_retries");
-
-        if (jobId == null || to == null || body == null) {
+    private void handleSmsJob(SmsJobMessage message) throws Exception {
+        if (!message.isComplete()) {
+            // Still passes its seq along so the server does not replay it, as for batch entries
+            persistStage.submit(new Intake(null, message.seq));
             throw new Exception("Missing required fields");
         }
 
-        Log.i(TAG, "Received SMS job: " + jobId);
-        repository.logEvent("INFO", "Received job to " + to);
+        Log.i(TAG, "Received SMS job: " + message.jobId);
+        repository.logEvent("INFO", "Received job to " + message.to);
+        persistStage.submit(new Intake(newJob(message, System.currentTimeMillis()), message.seq));
+    }
 
-        // Create job in local queue
-        repository.createJob(to, body, maxRetries != null ? maxRetries : 3, () -> {
-            // Job created, now send it
-            repository.getJob(jobId, job -> {
-                if (job != null) {
-                    sendSmsJob(job);
-                }
-            });
-        });
+    /**
+     * Build the local queue entry for an incoming job.
+     * The body's encoding and segment count are computed once here rather than on every send.
+     * If the job opted in, the body is transliterated to GSM-7 when that needs fewer segments.
+     */
+    private SmsJobEntity newJob(SmsJobMessage message, long now) {
+        String body = message.body;
+        SmsEncoder.Segmentation segmentation = SmsEncoder.segment(body);
+        if (message.transliterate && SmsEncoder.UCS_2.equals(segmentation.encoding)) {
+            String transliterated = GsmTransliterator.transliterate(body);
+            SmsEncoder.Segmentation candidate = SmsEncoder.segment(transliterated);
+            int saved = segmentation.segmentCount() - candidate.segmentCount();
+            if (saved > 0) {
+                body = transliterated;
+                segmentation = candidate;
+                GatewayMetrics.counter("sms.segments_saved").addAndGet(saved);
+                repository.logEvent("INFO", "Transliterated job " + message.jobId
+                        + " to GSM-7, saved " + saved + " segment(s)");
+            }
+        }
+
+        SmsJobEntity job = new SmsJobEntity(
+                message.jobId,
+                message.to,
+                body,
+                SmsJobStatus.QUEUED.getValue(),
+                0,  // attempts
+                message.maxRetries != null ? message.maxRetries : 3,
+                now,
+                now
+        );
+        job.priority = message.priority != null ? message.priority : 0;
+        job.encoding = segmentation.encoding;
+        job.segmentCount = segmentation.segmentCount();
+        return job;
     }
 
     /**
-     * Send an SMS job using SmsManager.
+     * Handle an sms_job_batch message from the server.
+     * Entries go to the persist stage, which inserts them together with neighbouring jobs.
+     */
+    private void handleSmsJobBatch(SmsJobBatchMessage message) {
+        long now = System.currentTimeMillis();
+        Log.i(TAG, "Received SMS job batch: " + message.jobs.size() + " jobs");
+        repository.logEvent("INFO", "Received batch of " + message.jobs.size() + " jobs");
+
+        for (SmsJobMessage jobMessage : message.jobs) {
+            if (!jobMessage.isComplete()) {
+                // Still passes its seq along so the server does not replay it
+                Log.w(TAG, "Skipping batch entry with missing fields");
+                persistStage.submit(new Intake(null, jobMessage.seq));
+                continue;
+            }
+            persistStage.submit(new Intake(newJob(jobMessage, now), jobMessage.seq));
+        }
+    }
+
+    /**
+     * Persist stage: insert a batch of received jobs in one transaction, advance the resume
+     * sequence, and pass the jobs that were not duplicates on to be scheduled.
+     */
+    private void persistJobs(List<Intake> intakes) {
+        List<SmsJobEntity> jobs = new ArrayList<>(intakes.size());
+        Long maxSeq = null;
+        for (Intake intake : intakes) {
+            if (intake.job != null) {
+                jobs.add(intake.job);
+            }
+            if (intake.seq != null) {
+                maxSeq = maxSeq == null ? intake.seq : Math.max(maxSeq, intake.seq);
+            }
+        }
+
+        List<SmsJobEntity> created = jobs.isEmpty() ? jobs : repository.insertNewJobs(jobs);
+        // Jobs are stored locally; the server no longer needs to replay them
+        if (maxSeq != null) {
+            prefsManager.advanceLastJobSeq(maxSeq);
+        }
+        // A redelivered duplicate is already being handled
+        for (SmsJobEntity job : created) {
+            scheduleStage.submit(job);
+        }
+    }
+
+    /**
+     * Report stage: record a batch of jobs handed to SmsManager as sending, then queue their
+     * status updates for the server. A job whose attempt already failed and was rescheduled
+     * stays failed_retrying.
+     */
+    private void reportSending(List<SmsJobEntity> jobs) {
+        for (SmsJobEntity job : repository.markSending(jobs)) {
+            reportStatus(job.jobId, SmsJobStatus.SENDING, job.attempts, null, null);
+        }
+    }
+
+    /**
+     * Queue an SMS job for sending, ahead of any less urgent jobs still waiting.
+     * Called from the schedule stage.
      */
     private void sendSmsJob(SmsJobEntity job) {
-        smsSender.sendSms(job, new SmsSender.SmsSenderCallback() {
+        dispatchQueue.submit(job, new SmsSender.SmsSenderCallback() {
             @Override
             public void onSmsSendStarted(SmsJobEntity job) {
-                // Update status to SENDING
-                repository.updateJobStatus(job.jobId, SmsJobStatus.SENDING, null, null, null);
-                // Send status update to server
-                String statusMsg = MessageParser.createStatusUpdateMessage(
-                        job.jobId,
-                        SmsJobStatus.SENDING.getValue(),
-                        0
-                );
-                webSocketManager.sendMessage(statusMsg);
+                // Record the SIM and SENDING status, and report it, off the send thread
+                reportStage.submit(job);
             }
 
             @Override
@@ -282,14 +603,18 @@ public class GatewayForegroundService extends Service {
 
     /**
      * Handle a ping message from the server.
+     * Normally called on the socket reader, so the pong never waits behind queued frames.
      */
-    private void handlePing(String jsonText) throws Exception {
-        JsonObject json = MessageParser.parseMessage(jsonText);
-        String messageId = MessageParser.getStringField(json, "message_id", null);
+    private void handlePing(PingMessage message) {
+        String messageId = message.messageId;
 
         if (messageId != null) {
-            String pongMsg = MessageParser.createPongMessage(messageId);
-            webSocketManager.sendMessage(pongMsg);
+            if (binaryProtocol) {
+                webSocketManager.sendControlBytes(BinaryCodec.encodePong(
+                        MessageWriter.nextMessageId(), messageId, System.currentTimeMillis()));
+            } else {
+                webSocketManager.sendControlMessage(MessageParser.createPongMessage(messageId));
+            }
             Log.d(TAG, "Sent pong response");
         }
     }
@@ -297,31 +622,210 @@ public class GatewayForegroundService extends Service {
     /**
      * Handle an error message from the server.
      */
-    private void handleError(String jsonText) throws Exception {
-        JsonObject json = MessageParser.parseMessage(jsonText);
-        String code = MessageParser.getStringField(json, "code", "UNKNOWN");
-        String detail = MessageParser.getStringField(json, "detail", "");
+    private void handleError(ErrorMessage message) {
+        String code = message.code != null ? message.code : "UNKNOWN";
+        String detail = message.detail != null ? message.detail : "";
 
         Log.w(TAG, "Server error: " + code + " - " + detail);
         repository.logEvent("ERROR", "✗ Server error: " + code);
     }
 
     /**
-     * Flush pending status reports to the server.
+     * Handle a config message from the server. Settings are persisted so they survive restarts.
+     */
+    private void handleConfig(ConfigMessage message) {
+        if (message.sendBurst != null || message.sendRatePerMinute != null) {
+            int burst = message.sendBurst != null ? message.sendBurst : prefsManager.getSendBurst();
+            int ratePerMinute = message.sendRatePerMinute != null
+                    ? message.sendRatePerMinute : prefsManager.getSendRatePerMinute();
+            if (burst < 1 || ratePerMinute < 1) {
+                Log.w(TAG, "Ignoring invalid send pacing: " + ratePerMinute + "/min, burst " + burst);
+            } else {
+                prefsManager.setSendPacing(burst, ratePerMinute);
+                sendPacer.configure(burst, ratePerMinute);
+                repository.logEvent("INFO", "Send pacing set to " + ratePerMinute + "/min per SIM");
+            }
+        }
+        if (message.sendWindow != null) {
+            if (message.sendWindow < 1) {
+                Log.w(TAG, "Ignoring invalid send window: " + message.sendWindow);
+            } else {
+                prefsManager.setSendWindow(message.sendWindow);
+                sendWindow.setMaxWindow(message.sendWindow);
+            }
+        }
+        if (message.statusBatch != null) {
+            // Only for this connection; a server that never says so gets one update per frame
+            statusBatchAccepted = message.statusBatch;
+            Log.i(TAG, "Server " + (statusBatchAccepted ? "accepts" : "refuses") + " status_batch");
+        }
+    }
+
+    /**
+     * Send one batch of status updates (called by the StatusBatcher).
+     * If the socket is disconnected or backpressured, the unsent updates spill to Room instead.
+     * Returns how many frames were sent.
+     */
+    private int sendStatusUpdates(List<StatusUpdate> updates) {
+        int sent = 0;
+        int frames = 0;
+        // While older reports are spilled, newer ones queue behind them to keep ordering
+        if (!reportsSpilled) {
+            boolean oneFrame = sendsOneFrame(updates.size());
+            sent = sendStatusFrames(updates, oneFrame);
+            frames = oneFrame ? Math.min(sent, 1) : sent;
+            // Updates that shared a frame instead of taking one each
+            GatewayMetrics.counter("status.frames_saved").addAndGet(sent - frames);
+        }
+        if (sent < updates.size()) {
+            spillStatusUpdates(updates.subList(sent, updates.size()));
+        }
+        return frames;
+    }
+
+    /**
+     * Send status updates as sequence-numbered frames: one status_batch frame if the server
+     * accepts them (always the case for the binary codec), otherwise one status_update each.
+     * Returns how many updates were sent; the rest were refused by the socket.
+     */
+    private int sendStatusFrames(List<StatusUpdate> updates) {
+        return sendStatusFrames(updates, sendsOneFrame(updates.size()));
+    }
+
+    /**
+     * Send status updates in one frame, or one status_update frame each.
+     * Returns how many updates were sent.
+     */
+    private synchronized int sendStatusFrames(List<StatusUpdate> updates, boolean oneFrame) {
+        if (oneFrame) {
+            return sendStatusFrame(updates) ? updates.size() : 0;
+        }
+        for (int i = 0; i < updates.size(); i++) {
+            if (!sendStatusFrame(updates.subList(i, i + 1))) {
+                return i;
+            }
+        }
+        return updates.size();
+    }
+
+    // Whether `count` status updates go out together in a single frame
+    private boolean sendsOneFrame(int count) {
+        return count == 1 || binaryProtocol || statusBatchAccepted;
+    }
+
+    /**
+     * Encode and send one sequence-numbered frame of status updates.
+     * A single update goes out as a plain status_update frame.
+     */
+    private boolean sendStatusFrame(List<StatusUpdate> updates) {
+        long seq = statusSequence.next();
+        boolean sent;
+        if (binaryProtocol) {
+            String messageId = MessageWriter.nextMessageId();
+            sent = webSocketManager.sendBytes(updates.size() == 1
+                    ? BinaryCodec.encodeStatusUpdate(messageId, seq, updates.get(0))
+                    : BinaryCodec.encodeStatusBatch(messageId, seq, updates));
+        } else {
+            sent = webSocketManager.sendMessage(updates.size() == 1
+                    ? MessageParser.createStatusUpdateMessage(updates.get(0), seq)
+                    : MessageParser.createStatusBatchMessage(updates, seq));
+        }
+        if (!sent) {
+            statusSequence.release(seq);
+        }
+        return sent;
+    }
+
+    /**
+     * Keep unsent status updates as pending reports in the local queue.
+     */
+    private void spillStatusUpdates(List<StatusUpdate> updates) {
+        synchronized (spillLock) {
+            reportsSpilled = true;
+            spillGeneration++;
+            spillsUnmarked++;
+        }
+        List<String> jobIds = new ArrayList<>(updates.size());
+        for (StatusUpdate update : updates) {
+            jobIds.add(update.jobId);
+        }
+        repository.markPendingReports(jobIds, () -> {
+            boolean flush;
+            synchronized (spillLock) {
+                spillsUnmarked--;
+                flush = flushAfterMark && spillsUnmarked == 0;
+                if (flush) {
+                    flushAfterMark = false;
+                }
+            }
+            // A flush read the table before these marks committed; run it again now that they have
+            if (flush) {
+                flushPendingReports();
+            }
+        });
+        GatewayMetrics.counter("status.spilled").addAndGet(updates.size());
+    }
+
+    /**
+     * Flush pending status reports to the server, oldest first.
+     * Stops at the first refused frame; the next drain or reconnect continues from there.
      */
     private void flushPendingReports() {
+        long generation;
+        boolean allMarked;
+        synchronized (spillLock) {
+            generation = spillGeneration;
+            allMarked = spillsUnmarked == 0;
+        }
         repository.getJobsWithPendingReports(jobs -> {
-            for (SmsJobEntity job : jobs) {
-                String statusMsg = MessageParser.createStatusUpdateMessage(
-                        job.jobId,
-                        job.status,
-                        job.attempts
-                );
-                webSocketManager.sendMessage(statusMsg);
+            if (jobs.isEmpty()) {
+                // Only an empty read that followed every mark, with no spill since, proves
+                // nothing is left; otherwise read again once the marks have committed
+                boolean again = false;
+                synchronized (spillLock) {
+                    if (allMarked && spillGeneration == generation) {
+                        reportsSpilled = false;
+                    } else if (spillsUnmarked == 0) {
+                        again = true;
+                    } else {
+                        flushAfterMark = true;
+                    }
+                }
+                if (again) {
+                    flushPendingReports();
+                }
+                return;
             }
-            if (!jobs.isEmpty()) {
-                Log.i(TAG, "Flushed " + jobs.size() + " pending reports");
+            reportsSpilled = true;
+
+            for (int start = 0; start < jobs.size(); start += STATUS_FLUSH_MAX_ENTRIES) {
+                int end = Math.min(start + STATUS_FLUSH_MAX_ENTRIES, jobs.size());
+                List<SmsJobEntity> chunk = jobs.subList(start, end);
+                List<StatusUpdate> updates = new ArrayList<>(chunk.size());
+                for (SmsJobEntity job : chunk) {
+                    updates.add(new StatusUpdate(
+                            job.jobId,
+                            job.status,
+                            job.attempts,
+                            job.errorCode,
+                            job.errorMessage,
+                            job.updatedAt
+                    ));
+                }
+                int sent = sendStatusFrames(updates);
+                if (sent < chunk.size()) {
+                    if (sent > 0) {
+                        repository.clearPendingReports(new ArrayList<>(chunk.subList(0, sent)), null);
+                    }
+                    Log.i(TAG, "Flushed " + (start + sent) + " pending reports, waiting for drain");
+                    return;
+                }
+                // After the last chunk's flags are cleared (the writer runs clears in order),
+                // pick up reports spilled while this pass was running
+                repository.clearPendingReports(new ArrayList<>(chunk),
+                        end == jobs.size() ? this::flushPendingReports : null);
             }
+            Log.i(TAG, "Flushed " + jobs.size() + " pending reports");
         });
     }
 
@@ -329,28 +833,37 @@ public class GatewayForegroundService extends Service {
      * Resume jobs that were pending when the service stopped.
      */
     private void resumePendingJobs() {
-        repository.getJobsReadyForRetry(jobs -> {
-            Log.i(TAG, "Resuming " + jobs.size() + " pending jobs");
+        repository.getQueuedJobs(jobs -> {
+            Log.i(TAG, "Resuming " + jobs.size() + " queued jobs");
             for (SmsJobEntity job : jobs) {
-                sendSmsJob(job);
+                scheduleStage.submit(job);
+            }
+        });
+        repository.getJobsAwaitingRetry(jobs -> {
+            Log.i(TAG, "Scheduling " + jobs.size() + " pending retries");
+            for (SmsJobEntity job : jobs) {
+                retryScheduler.schedule(job.jobId, job.nextRetryAt != null ? job.nextRetryAt : 0);
             }
         });
     }
 
     /**
-     * Schedule a reconnect attempt with exponential backoff.
+     * Send a job whose retry is due (called by the RetryScheduler).
      */
-    private void scheduleReconnect() {
-        reconnectAttempt++;
-        long delay = Math.min(
-                INITIAL_RECONNECT_DELAY * (long) Math.pow(2, reconnectAttempt - 1),
-                MAX_RECONNECT_DELAY
-        );
-
-        Log.i(TAG, "Scheduling reconnect (attempt " + reconnectAttempt + ") in " + delay + "ms");
-        updateNotification("Reconnecting... (" + reconnectAttempt + ")");
+    private void retryJob(String jobId) {
+        repository.getJobForRetry(jobId, job -> {
+            if (job != null && SmsJobStatus.FAILED_RETRYING.getValue().equals(job.status)) {
+                scheduleStage.submit(job);
+            }
+        });
+    }
 
-        mainHandler.postDelayed(this::connectToBackend, delay);
+    /**
+     * Schedule a reconnect attempt (immediate on a new validated network, jittered backoff otherwise).
+     */
+    private void scheduleReconnect() {
+        updateNotification("Reconnecting... (" + (reconnectScheduler.getAttempt() + 1) + ")");
+        reconnectScheduler.onDisconnected();
     }
 
     /**
@@ -381,6 +894,32 @@ public class GatewayForegroundService extends Service {
         }
     }
 
+    /**
+     * A received WebSocket frame on its way to the decode stage; exactly one field is set.
+     */
+    private static class Frame {
+        final String text;
+        final byte[] bytes;
+
+        Frame(String text, byte[] bytes) {
+            this.text = text;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A received job on its way to the persist stage; job is null for a skipped batch entry.
+     */
+    private static class Intake {
+        final SmsJobEntity job;
+        final Long seq;
+
+        Intake(SmsJobEntity job, Long seq) {
+            this.job = job;
+            this.seq = seq;
+        }
+    }
+
     // Listener interface for service state changes
     public interface ServiceStateListener {
         void onConnected();
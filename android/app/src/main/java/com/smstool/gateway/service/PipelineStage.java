@@ -0,0 +1,122 @@
+package com.smstool.gateway.service;
+
+import android.util.Log;
+
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One stage of the job pipeline: a bounded queue drained by its own worker thread.
+ * submit() blocks while the queue is full, so a slow stage pushes back on whoever feeds it
+ * instead of buffering without limit. The worker takes up to `maxBatch` items at a time so
+ * stages that write to the database can commit them together.
+ *
+ * Metrics, per stage name:
+ * - stage.<name>.depth   items waiting in the queue
+ * - stage.<name>.wait    time an item spent queued
+ * - stage.<name>.service time to process one batch
+ * - stage.<name>.blocked time submit() waited for room (only recorded when it had to wait)
+ */
+public class PipelineStage<T> {
+    private static final String TAG = "PipelineStage";
+
+    private final String name;
+    private final int maxBatch;
+    private final Handler<T> handler;
+    private final BlockingQueue<Queued<T>> queue;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LatencyHistogram waitTime;
+    private final LatencyHistogram serviceTime;
+    private final LatencyHistogram blockedTime;
+
+    public PipelineStage(String name, int capacity, int maxBatch, Handler<T> handler) {
+        this.name = name;
+        this.maxBatch = maxBatch;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.waitTime = GatewayMetrics.histogram("stage." + name + ".wait");
+        this.serviceTime = GatewayMetrics.histogram("stage." + name + ".service");
+        this.blockedTime = GatewayMetrics.histogram("stage." + name + ".blocked");
+        GatewayMetrics.gauge("stage." + name + ".depth", queue::size);
+
+        worker = new Thread(this::run, "stage-" + name);
+        worker.start();
+    }
+
+    /**
+     * Queue an item, waiting for room if the stage is full.
+     * Must not be called from this stage's own handler.
+     */
+    public void submit(T item) {
+        Queued<T> queued = new Queued<>(item, System.currentTimeMillis());
+        if (queue.offer(queued)) {
+            return;
+        }
+        long blockedSince = System.currentTimeMillis();
+        try {
+            queue.put(queued);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted while queueing into " + name);
+            return;
+        }
+        blockedTime.record(System.currentTimeMillis() - blockedSince);
+    }
+
+    /**
+     * Stop the worker. Items still queued are dropped (jobs are persisted or recovered from Room).
+     */
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        List<Queued<T>> drained = new ArrayList<>(maxBatch);
+        List<T> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(drained, maxBatch - 1);
+
+            long start = System.currentTimeMillis();
+            for (Queued<T> queued : drained) {
+                waitTime.record(start - queued.queuedAt);
+                batch.add(queued.item);
+            }
+            try {
+                handler.process(batch);
+            } catch (Exception e) {
+                Log.e(TAG, "Stage " + name + " failed on a batch of " + batch.size(), e);
+            }
+            serviceTime.record(System.currentTimeMillis() - start);
+            drained.clear();
+            batch.clear();
+        }
+    }
+
+    private static class Queued<T> {
+        final T item;
+        final long queuedAt;
+
+        Queued(T item, long queuedAt) {
+            this.item = item;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    // Processes one batch of items on the stage's worker thread (the list is reused afterwards)
+    public interface Handler<T> {
+        void process(List<T> items);
+    }
+}
@@ -0,0 +1,259 @@
+package com.smstool.gateway.service;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires failed_retrying jobs when their nextRetryAt is due.
+ * Retries live in a hashed timing wheel (TICK_MILLIS per slot), so scheduling and cancelling
+ * are O(1) regardless of how many retries are pending. The wheel only ticks while a retry is
+ * due within TICK_HORIZON; further out it sleeps on a single wake-up. Because timers stop while
+ * the device is in Doze, an exact idle alarm for the earliest due retry is kept as a backstop;
+ * when it fires the wheel catches up on missed ticks.
+ */
+public class RetryScheduler {
+    private static final String TAG = "RetryScheduler";
+    private static final String ACTION_RETRY_ALARM = "com.smstool.gateway.action.RETRY_ALARM";
+    private static final long TICK_MILLIS = 50;
+    private static final int WHEEL_SIZE = 1024;           // ~51 seconds per rotation
+    private static final long EARLIEST_RESCAN_INTERVAL = 1000;
+    private static final long TICK_HORIZON = 1000;        // start ticking this long before a retry
+
+    private final Context context;
+    private final RetryListener listener;
+    private final AlarmManager alarmManager;
+    private final PendingIntent alarmIntent;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+
+    private final List<List<Entry>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long currentTick;  // last tick processed
+    private ScheduledFuture<?> tickTask;
+    private boolean ticking;   // tickTask is the periodic tick, not a one-shot wake-up
+
+    private long earliestDue = Long.MAX_VALUE;
+    private long lastRescanAt = 0;
+    private long alarmArmedAt = 0;
+
+    private final LatencyHistogram lateness = GatewayMetrics.histogram("retry.lateness");
+
+    private final BroadcastReceiver alarmReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            ticker.execute(RetryScheduler.this::tick);
+        }
+    };
+
+    public RetryScheduler(Context context, RetryListener listener) {
+        this.context = context;
+        this.listener = listener;
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+
+        Intent intent = new Intent(ACTION_RETRY_ALARM);
+        intent.setPackage(context.getPackageName());
+        this.alarmIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        currentTick = System.currentTimeMillis() / TICK_MILLIS;
+        GatewayMetrics.gauge("retry.pending", () -> {
+            synchronized (this) {
+                return entries.size();
+            }
+        });
+    }
+
+    /**
+     * Start listening for the backstop alarm.
+     */
+    public void start() {
+        ContextCompat.registerReceiver(context, alarmReceiver,
+                new IntentFilter(ACTION_RETRY_ALARM), ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    /**
+     * Stop ticking and cancel the backstop alarm. Pending retries stay in the database.
+     */
+    public void stop() {
+        alarmManager.cancel(alarmIntent);
+        try {
+            context.unregisterReceiver(alarmReceiver);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Alarm receiver was not registered");
+        }
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Fire a retry for the job at the given time (epoch millis). Replaces any earlier schedule.
+     */
+    public synchronized void schedule(String jobId, long dueAtMillis) {
+        Entry previous = entries.remove(jobId);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+
+        // Round up so a retry never fires before its due time
+        long tick = Math.max((dueAtMillis + TICK_MILLIS - 1) / TICK_MILLIS, currentTick + 1);
+        Entry entry = new Entry(jobId, dueAtMillis, tick);
+        entries.put(jobId, entry);
+        wheel.get((int) (tick % WHEEL_SIZE)).add(entry);
+
+        if (dueAtMillis < earliestDue) {
+            earliestDue = dueAtMillis;
+            armAlarm(earliestDue);
+            scheduleTicking(System.currentTimeMillis());
+        } else if (tickTask == null) {
+            scheduleTicking(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Drop a job's pending retry (e.g. it was sent some other way).
+     */
+    public synchronized void cancel(String jobId) {
+        Entry entry = entries.remove(jobId);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    private void tick() {
+        List<Entry> due = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            long nowTick = now / TICK_MILLIS;
+            // After a long sleep, each slot only needs visiting once
+            long slots = Math.min(nowTick - currentTick, WHEEL_SIZE);
+            for (long i = 1; i <= slots; i++) {
+                Iterator<Entry> slot = wheel.get((int) ((currentTick + i) % WHEEL_SIZE)).iterator();
+                while (slot.hasNext()) {
+                    Entry entry = slot.next();
+                    if (entry.cancelled) {
+                        slot.remove();
+                    } else if (entry.tick <= nowTick) {
+                        slot.remove();
+                        entries.remove(entry.jobId);
+                        due.add(entry);
+                    }
+                }
+            }
+            currentTick = Math.max(currentTick, nowTick);
+
+            if (entries.isEmpty()) {
+                stopTicking();
+            } else {
+                if (earliestDue <= now) {
+                    rescanEarliest(now);
+                }
+                scheduleTicking(now);
+            }
+        }
+
+        for (Entry entry : due) {
+            lateness.record(now - entry.dueAt);
+            listener.onRetryDue(entry.jobId);
+        }
+    }
+
+    // Called with the lock held once the earliest known retry has fired
+    private void rescanEarliest(long now) {
+        if (now - lastRescanAt < EARLIEST_RESCAN_INTERVAL) {
+            // Rescans are O(n); until the next one, just make sure Doze can't stall us for long
+            armAlarm(lastRescanAt + EARLIEST_RESCAN_INTERVAL);
+            return;
+        }
+        lastRescanAt = now;
+        earliestDue = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            earliestDue = Math.min(earliestDue, entry.dueAt);
+        }
+        armAlarm(earliestDue);
+    }
+
+    // Called with the lock held: tick every TICK_MILLIS once the earliest retry is within
+    // TICK_HORIZON, otherwise sleep until it is, so idle retries don't keep waking the CPU
+    private void scheduleTicking(long now) {
+        long sleepMillis = earliestDue - TICK_HORIZON - now;
+        if (sleepMillis <= 0) {
+            if (!ticking) {
+                cancelTickTask();
+                // Aligned to slot boundaries, so a slot is visited as soon as its time has come
+                tickTask = ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS - now % TICK_MILLIS,
+                        TICK_MILLIS, TimeUnit.MILLISECONDS);
+                ticking = true;
+            }
+        } else {
+            cancelTickTask();
+            tickTask = ticker.schedule(this::tick, sleepMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelTickTask() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+        ticking = false;
+    }
+
+    private void stopTicking() {
+        cancelTickTask();
+        earliestDue = Long.MAX_VALUE;
+        alarmArmedAt = 0;
+        alarmManager.cancel(alarmIntent);
+    }
+
+    private void armAlarm(long triggerAtMillis) {
+        if (triggerAtMillis == alarmArmedAt) {
+            return;
+        }
+        alarmArmedAt = triggerAtMillis;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, alarmIntent);
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, alarmIntent);
+        }
+    }
+
+    private static class Entry {
+        final String jobId;
+        final long dueAt;  // epoch millis
+        final long tick;   // absolute wheel tick the entry fires on
+        boolean cancelled;
+
+        Entry(String jobId, long dueAt, long tick) {
+            this.jobId = jobId;
+            this.dueAt = dueAt;
+            this.tick = tick;
+        }
+    }
+
+    // Callback for retries that are due
+    public interface RetryListener {
+        void onRetryDue(String jobId);
+    }
+}
@@ -0,0 +1,141 @@
+package com.smstool.gateway.service;
+
+import android.util.Log;
+
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces outgoing SMS with one token bucket per SIM subscription.
+ * A bucket holds up to `burst` tokens and refills at `ratePerMinute`. Each send takes one token;
+ * sends that find the bucket empty wait in that bucket's FIFO queue instead of being handed to
+ * SmsManager, where the OS outgoing-SMS check and carrier throttling would fail them.
+ * Sends run on the pacer's own thread, in submission order per SIM.
+ */
+public class SendPacer {
+    private static final String TAG = "SendPacer";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Integer, Bucket> buckets = new HashMap<>();
+    private final LatencyHistogram waitTime = GatewayMetrics.histogram("pacer.wait");
+
+    private int burst;
+    private int ratePerMinute;
+
+    public SendPacer(int burst, int ratePerMinute) {
+        this.burst = Math.max(1, burst);
+        this.ratePerMinute = Math.max(1, ratePerMinute);
+    }
+
+    /**
+     * Change the bucket size and refill rate. Applies to all SIMs immediately.
+     */
+    public synchronized void configure(int burst, int ratePerMinute) {
+        this.burst = Math.max(1, burst);
+        this.ratePerMinute = Math.max(1, ratePerMinute);
+        Log.i(TAG, "Pacing " + this.ratePerMinute + "/min per SIM, burst " + this.burst);
+
+        // Re-plan waiting sends with the new rate
+        long now = System.nanoTime();
+        for (Bucket bucket : buckets.values()) {
+            bucket.refill(now);
+            bucket.tokens = Math.min(bucket.tokens, this.burst);
+            if (bucket.scheduledDrain != null) {
+                bucket.scheduledDrain.cancel(false);
+                bucket.scheduledDrain = null;
+            }
+            drain(bucket);
+        }
+    }
+
+    /**
+     * Run a send on the given SIM as soon as its bucket has a token.
+     */
+    public synchronized void submit(int subscriptionId, Runnable send) {
+        Bucket bucket = buckets.get(subscriptionId);
+        if (bucket == null) {
+            bucket = new Bucket(subscriptionId, burst);
+            buckets.put(subscriptionId, bucket);
+        }
+        bucket.queue.add(new Queued(send, System.nanoTime()));
+        drain(bucket);
+    }
+
+    /**
+     * Stop pacing. Sends still waiting are dropped; their jobs stay queued in the database.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Called with the pacer lock held
+    private void drain(Bucket bucket) {
+        long now = System.nanoTime();
+        bucket.refill(now);
+        while (!bucket.queue.isEmpty() && bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            Queued queued = bucket.queue.poll();
+            waitTime.record(TimeUnit.NANOSECONDS.toMillis(now - queued.queuedAt));
+            scheduler.execute(queued.send);
+        }
+
+        if (!bucket.queue.isEmpty() && bucket.scheduledDrain == null) {
+            long delayNanos = (long) ((1 - bucket.tokens) * nanosPerToken());
+            bucket.scheduledDrain = scheduler.schedule(() -> {
+                synchronized (SendPacer.this) {
+                    bucket.scheduledDrain = null;
+                    drain(bucket);
+                }
+            }, Math.max(delayNanos, 0), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private double nanosPerToken() {
+        return TimeUnit.MINUTES.toNanos(1) / (double) ratePerMinute;
+    }
+
+    private class Bucket {
+        final ArrayDeque<Queued> queue = new ArrayDeque<>();
+        double tokens;
+        long lastRefill = System.nanoTime();
+        ScheduledFuture<?> scheduledDrain;
+
+        Bucket(int subscriptionId, int initialTokens) {
+            this.tokens = initialTokens;
+            GatewayMetrics.gauge("pacer." + subscriptionId + ".tokens", () -> {
+                synchronized (SendPacer.this) {
+                    refill(System.nanoTime());
+                    return (long) tokens;
+                }
+            });
+            GatewayMetrics.gauge("pacer." + subscriptionId + ".queued", () -> {
+                synchronized (SendPacer.this) {
+                    return queue.size();
+                }
+            });
+        }
+
+        void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) / nanosPerToken());
+            lastRefill = now;
+        }
+    }
+
+    private static class Queued {
+        final Runnable send;
+        final long queuedAt;  // System.nanoTime()
+
+        Queued(Runnable send, long queuedAt) {
+            this.send = send;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
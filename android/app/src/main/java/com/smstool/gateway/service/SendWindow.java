@@ -0,0 +1,216 @@
+package com.smstool.gateway.service;
+
+import android.util.Log;
+
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many sends may be waiting for their SMS_SENT broadcast at once.
+ * A send is admitted only while fewer than `window` sends are in flight; it leaves the window
+ * when acknowledged or after a timeout. The window adapts AIMD-style: it grows by one per
+ * window's worth of fast acks, and halves on a timeout, a failed send, or a slow ack.
+ */
+public class SendWindow {
+    private static final String TAG = "SendWindow";
+    private static final int MIN_WINDOW = 1;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final long ackTimeoutMillis;
+    private final long targetAckLatencyMillis;
+
+    private final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+    private final Map<String, InFlight> inFlight = new HashMap<>();
+    private double window;
+    private int maxWindow;
+    private long lastDecreaseAt = 0;  // System.nanoTime() of the last multiplicative decrease
+    private ReleaseListener releaseListener;
+    private TimeoutListener timeoutListener;
+
+    private final LatencyHistogram ackLatency = GatewayMetrics.histogram("sms.ack_latency");
+    private final AtomicLong timeoutsCounter = GatewayMetrics.counter("send_window.timeouts");
+
+    /**
+     * @param maxWindow              upper bound for the adaptive window
+     * @param ackTimeoutMillis       how long a send may hold its slot without an SMS_SENT broadcast
+     * @param targetAckLatencyMillis acks slower than this shrink the window
+     */
+    public SendWindow(int maxWindow, long ackTimeoutMillis, long targetAckLatencyMillis) {
+        this.maxWindow = Math.max(MIN_WINDOW, maxWindow);
+        this.window = this.maxWindow;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.targetAckLatencyMillis = targetAckLatencyMillis;
+        GatewayMetrics.gauge("send_window.in_flight", () -> {
+            synchronized (this) {
+                return inFlight.size();
+            }
+        });
+        GatewayMetrics.gauge("send_window.size", () -> {
+            synchronized (this) {
+                return (long) window;
+            }
+        });
+    }
+
+    /**
+     * Set the listener notified whenever a job leaves the window.
+     */
+    public synchronized void setReleaseListener(ReleaseListener listener) {
+        this.releaseListener = listener;
+    }
+
+    /**
+     * Set the listener notified when a job leaves the window because its SMS_SENT never came.
+     */
+    public synchronized void setTimeoutListener(TimeoutListener listener) {
+        this.timeoutListener = listener;
+    }
+
+    /**
+     * Change the upper bound of the window.
+     */
+    public synchronized void setMaxWindow(int maxWindow) {
+        this.maxWindow = Math.max(MIN_WINDOW, maxWindow);
+        window = Math.min(window, this.maxWindow);
+        Log.i(TAG, "Max send window set to " + this.maxWindow);
+        admit();
+    }
+
+    /**
+     * Run a send once there is room in the window.
+     */
+    public synchronized void submit(String jobId, Runnable send) {
+        waiting.add(new Waiting(jobId, send));
+        admit();
+    }
+
+    /**
+     * Record the SMS_SENT result of a job. Later results for the same job are ignored.
+     */
+    public synchronized void acknowledge(String jobId, boolean success) {
+        InFlight entry = remove(jobId);
+        if (entry == null) {
+            return;
+        }
+        notifyReleased(jobId);
+
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.startedAt);
+        ackLatency.record(latency);
+        if (!success || latency > targetAckLatencyMillis) {
+            decrease(entry.startedAt);
+        } else {
+            // Additive increase: about +1 per window of acknowledged sends
+            window = Math.min(maxWindow, window + 1.0 / window);
+        }
+        admit();
+    }
+
+    /**
+     * Free a job's slot without treating it as a congestion signal (e.g. the send threw).
+     */
+    public synchronized void abort(String jobId) {
+        if (remove(jobId) != null) {
+            notifyReleased(jobId);
+            admit();
+        }
+    }
+
+    /**
+     * Stop admitting sends. Sends still waiting are dropped; their jobs stay queued in the database.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Called with the lock held
+    private void admit() {
+        while (!waiting.isEmpty() && inFlight.size() < (int) window) {
+            Waiting next = waiting.poll();
+            InFlight entry = new InFlight(System.nanoTime());
+            entry.timeout = executor.schedule(() -> onTimeout(next.jobId, entry),
+                    ackTimeoutMillis, TimeUnit.MILLISECONDS);
+            InFlight previous = inFlight.put(next.jobId, entry);
+            if (previous != null) {
+                previous.timeout.cancel(false);
+            }
+            executor.execute(next.send);
+        }
+    }
+
+    private synchronized void onTimeout(String jobId, InFlight entry) {
+        if (inFlight.get(jobId) != entry) {
+            return;
+        }
+        inFlight.remove(jobId);
+        notifyReleased(jobId);
+        timeoutsCounter.incrementAndGet();
+        Log.w(TAG, "No SMS_SENT for job " + jobId + " after " + ackTimeoutMillis + "ms");
+        if (timeoutListener != null) {
+            timeoutListener.onTimeout(jobId);
+        }
+        decrease(entry.startedAt);
+        admit();
+    }
+
+    // Multiplicative decrease, at most once per batch of sends started before the last decrease
+    private void decrease(long sendStartedAt) {
+        if (sendStartedAt < lastDecreaseAt) {
+            return;
+        }
+        lastDecreaseAt = System.nanoTime();
+        window = Math.max(MIN_WINDOW, window / 2);
+        Log.i(TAG, "Send window reduced to " + (int) window);
+    }
+
+    private void notifyReleased(String jobId) {
+        if (releaseListener != null) {
+            releaseListener.onReleased(jobId);
+        }
+    }
+
+    private InFlight remove(String jobId) {
+        InFlight entry = inFlight.remove(jobId);
+        if (entry != null) {
+            entry.timeout.cancel(false);
+        }
+        return entry;
+    }
+
+    private static class Waiting {
+        final String jobId;
+        final Runnable send;
+
+        Waiting(String jobId, Runnable send) {
+            this.jobId = jobId;
+            this.send = send;
+        }
+    }
+
+    private static class InFlight {
+        final long startedAt;  // System.nanoTime()
+        ScheduledFuture<?> timeout;
+
+        InFlight(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    // Callback for jobs leaving the window (acknowledged, timed out or aborted)
+    public interface ReleaseListener {
+        void onReleased(String jobId);
+    }
+
+    // Callback for jobs whose SMS_SENT did not arrive within the ack timeout
+    public interface TimeoutListener {
+        void onTimeout(String jobId);
+    }
+}
@@ -0,0 +1,189 @@
+package com.smstool.gateway.service;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.telephony.SmsManager;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.smstool.gateway.util.GatewayMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads outgoing SMS across all active SIM subscriptions.
+ * Keeps one SmsManager per subscription and picks the SIM with the fewest sends awaiting
+ * their SMS_SENT result, rotating between SIMs that are tied.
+ * Without READ_PHONE_STATE (or on a single-SIM device) it falls back to the default SmsManager.
+ */
+public class SimDispatcher {
+    private static final String TAG = "SimDispatcher";
+
+    private final Context context;
+    private final SubscriptionManager subscriptionManager;
+
+    private volatile List<Sim> sims = Collections.emptyList();
+    private final Map<String, Sim> inFlight = new ConcurrentHashMap<>();
+    private int nextIndex = 0;
+
+    // Created by start(): before API 30 the listener binds to the Looper of the thread creating it
+    private SubscriptionManager.OnSubscriptionsChangedListener subscriptionsListener;
+
+    public SimDispatcher(Context context) {
+        this.context = context;
+        this.subscriptionManager = context.getSystemService(SubscriptionManager.class);
+        refresh();
+    }
+
+    /**
+     * Start tracking SIM changes (before API 30 this must be called on a Looper thread).
+     */
+    public void start() {
+        subscriptionsListener = new SubscriptionManager.OnSubscriptionsChangedListener() {
+            @Override
+            public void onSubscriptionsChanged() {
+                refresh();
+            }
+        };
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            subscriptionManager.addOnSubscriptionsChangedListener(context.getMainExecutor(),
+                    subscriptionsListener);
+        } else {
+            addListenerOnLooper();
+        }
+    }
+
+    /**
+     * Stop tracking SIM changes.
+     */
+    public void stop() {
+        if (subscriptionsListener != null) {
+            subscriptionManager.removeOnSubscriptionsChangedListener(subscriptionsListener);
+            subscriptionsListener = null;
+        }
+    }
+
+    /**
+     * Re-enumerate active subscriptions. Outstanding counts of SIMs that remain active are kept.
+     */
+    @SuppressWarnings("MissingPermission")
+    public synchronized void refresh() {
+        List<SubscriptionInfo> infos = null;
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_PHONE_STATE)
+                == PackageManager.PERMISSION_GRANTED) {
+            infos = subscriptionManager.getActiveSubscriptionInfoList();
+        }
+
+        List<Sim> updated = new ArrayList<>();
+        if (infos == null || infos.isEmpty()) {
+            updated.add(findOrCreate(SubscriptionManager.getDefaultSmsSubscriptionId(), true));
+        } else {
+            for (SubscriptionInfo info : infos) {
+                updated.add(findOrCreate(info.getSubscriptionId(), false));
+            }
+        }
+        sims = updated;
+        nextIndex = 0;
+        Log.i(TAG, "Dispatching across " + updated.size() + " SIM(s)");
+    }
+
+    /**
+     * Number of SIMs jobs are currently spread across.
+     */
+    public int getSimCount() {
+        return sims.size();
+    }
+
+    /**
+     * Choose a SIM for a job and count it as outstanding until release() is called.
+     */
+    public synchronized Sim acquire(String jobId) {
+        List<Sim> current = sims;
+        Sim chosen = null;
+        int chosenIndex = 0;
+        for (int i = 0; i < current.size(); i++) {
+            int index = (nextIndex + i) % current.size();
+            Sim sim = current.get(index);
+            if (chosen == null || sim.outstanding.get() < chosen.outstanding.get()) {
+                chosen = sim;
+                chosenIndex = index;
+            }
+        }
+        nextIndex = chosenIndex + 1;
+
+        chosen.outstanding.incrementAndGet();
+        Sim previous = inFlight.put(jobId, chosen);
+        if (previous != null) {
+            previous.outstanding.decrementAndGet();
+        }
+        GatewayMetrics.counter("sim." + chosen.subscriptionId + ".sends").incrementAndGet();
+        return chosen;
+    }
+
+    /**
+     * Release a job's SIM once its send has completed or failed. Safe to call more than once.
+     */
+    public void release(String jobId) {
+        Sim sim = inFlight.remove(jobId);
+        if (sim != null) {
+            sim.outstanding.decrementAndGet();
+        }
+    }
+
+    private Sim findOrCreate(int subscriptionId, boolean useDefault) {
+        for (Sim sim : sims) {
+            if (sim.subscriptionId == subscriptionId) {
+                return sim;
+            }
+        }
+        boolean defaultSim = useDefault || subscriptionId == SubscriptionManager.INVALID_SUBSCRIPTION_ID;
+        SmsManager smsManager;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            SmsManager base = context.getSystemService(SmsManager.class);
+            smsManager = defaultSim ? base : base.createForSubscriptionId(subscriptionId);
+        } else {
+            smsManager = legacySmsManager(defaultSim, subscriptionId);
+        }
+        Sim sim = new Sim(subscriptionId, smsManager);
+        GatewayMetrics.gauge("sim." + subscriptionId + ".outstanding", sim.outstanding::get);
+        return sim;
+    }
+
+    // Pre-R listener registration; the Executor overload replaces it from API 30
+    @SuppressWarnings("deprecation")
+    private void addListenerOnLooper() {
+        subscriptionManager.addOnSubscriptionsChangedListener(subscriptionsListener);
+    }
+
+    // Pre-S lookup; context.getSystemService(SmsManager.class) replaces it from API 31
+    @SuppressWarnings("deprecation")
+    private static SmsManager legacySmsManager(boolean defaultSim, int subscriptionId) {
+        return defaultSim
+                ? SmsManager.getDefault()
+                : SmsManager.getSmsManagerForSubscriptionId(subscriptionId);
+    }
+
+    /**
+     * One active SIM subscription and its sends awaiting a result.
+     */
+    public static class Sim {
+        public final int subscriptionId;
+        public final SmsManager smsManager;
+        final AtomicInteger outstanding = new AtomicInteger();
+
+        Sim(int subscriptionId, SmsManager smsManager) {
+            this.subscriptionId = subscriptionId;
+            this.smsManager = smsManager;
+        }
+    }
+}
@@ -9,57 +9,91 @@ import android.util.Log;
 import com.smstool.gateway.data.db.SmsJobEntity;
 import com.smstool.gateway.data.model.SmsJobStatus;
 import com.smstool.gateway.data.repository.SmsJobRepository;
+import com.smstool.gateway.network.SequenceAllocator;
 import com.smstool.gateway.receiver.SmsSentReceiver;
+import com.smstool.gateway.util.GatewayMetrics;
+import com.smstool.gateway.util.LatencyHistogram;
+import com.smstool.gateway.util.SmsEncoder;
 
 import java.util.ArrayList;
 
 /**
  * Handles SMS sending via Android's SmsManager.
  * Manages multi-part messages, pending intents, and result callbacks.
+ * Each job is sent on the SIM chosen by the SimDispatcher, paced by that SIM's SendPacer bucket,
+ * and only once the SendWindow has room for another send awaiting SMS_SENT.
  */
 public class SmsSender {
     private static final String TAG = "SmsSender";
-    private static final String ACTION_SMS_SENT = "com.smstool.gateway.action.SMS_SENT";
+    public static final String ACTION_SMS_SENT = "com.smstool.gateway.action.SMS_SENT";
+    public static final String EXTRA_JOB_ID = "job_id";
+    public static final String EXTRA_PART_INDEX = "part_index";  // only set for multipart jobs
 
     private final Context context;
     private final SmsJobRepository repository;
-    private final SmsManager smsManager;
+    private final SimDispatcher simDispatcher;
+    private final SendPacer sendPacer;
+    private final SendWindow sendWindow;
+    private final SequenceAllocator intentIds;
 
-    public SmsSender(Context context, SmsJobRepository repository) {
+    private final LatencyHistogram sendTime = GatewayMetrics.histogram("stage.send.service");
+
+    public SmsSender(Context context, SmsJobRepository repository, SimDispatcher simDispatcher,
+                     SendPacer sendPacer, SendWindow sendWindow, SequenceAllocator intentIds) {
         this.context = context;
         this.repository = repository;
-        this.smsManager = SmsManager.getDefault();
+        this.simDispatcher = simDispatcher;
+        this.sendPacer = sendPacer;
+        this.sendWindow = sendWindow;
+        this.intentIds = intentIds;
     }
 
     /**
      * Send an SMS for a job.
-     * Handles multi-part messages if body > 160 chars.
+     * Handles multi-part messages if the body needs more than one segment.
+     * The job waits for a token from its SIM's pacer and a slot in the send window;
+     * callbacks fire once it is actually sent.
+     * The chosen subscription is recorded on the job before the callback fires.
      */
     public void sendSms(SmsJobEntity job, SmsSenderCallback callback) {
-        try {
-            // Check if message needs to be split into multiple parts
-            ArrayList<String> parts = smsManager.divideMessage(job.body);
+        SimDispatcher.Sim sim = simDispatcher.acquire(job.jobId);
+        job.subscriptionId = sim.subscriptionId;
+        sendPacer.submit(sim.subscriptionId,
+                () -> sendWindow.submit(job.jobId, () -> sendOnSim(sim, job, callback)));
+    }
 
-            if (parts.size() == 1) {
-                sendSinglePartSms(job, callback);
+    private void sendOnSim(SimDispatcher.Sim sim, SmsJobEntity job, SmsSenderCallback callback) {
+        long start = System.currentTimeMillis();
+        try {
+            // Segment count is computed at intake; older rows (0) are classified now
+            if (job.segmentCount == 1) {
+                sendSinglePartSms(sim.smsManager, job, callback);
             } else {
-                sendMultiPartSms(job, parts, callback);
+                SmsEncoder.Segmentation segmentation = SmsEncoder.segment(job.body);
+                if (segmentation.segmentCount() == 1) {
+                    sendSinglePartSms(sim.smsManager, job, callback);
+                } else {
+                    sendMultiPartSms(sim.smsManager, job, segmentation.split(job.body), callback);
+                }
             }
         } catch (Exception e) {
             Log.e(TAG, "Error preparing SMS", e);
+            simDispatcher.release(job.jobId);
+            sendWindow.abort(job.jobId);
             if (callback != null) {
                 callback.onSmsSendFailed(job, "Error preparing SMS: " + e.getMessage());
             }
         }
+        sendTime.record(System.currentTimeMillis() - start);
     }
 
     /**
      * Send a single-part SMS.
      */
-    private void sendSinglePartSms(SmsJobEntity job, SmsSenderCallback callback) {
+    private void sendSinglePartSms(SmsManager smsManager, SmsJobEntity job, SmsSenderCallback callback) {
         try {
-            PendingIntent sentIntent = createSentIntent(job.jobId);
-            PendingIntent deliveryIntent = createDeliveryIntent(job.jobId);
+            PendingIntent sentIntent = createSentIntent(job.jobId, -1);
+            PendingIntent deliveryIntent = createDeliveryIntent(job.jobId, -1);
 
             smsManager.sendTextMessage(
                     job.toNumber,
@@ -69,12 +103,15 @@ public class SmsSender {
                     deliveryIntent
             );
 
-            Log.i(TAG, "SMS sent for job: " + job.jobId + " to " + job.toNumber);
+            Log.i(TAG, "SMS sent for job: " + job.jobId + " to " + job.toNumber
+                    + " (subscription " + job.subscriptionId + ")");
             if (callback != null) {
                 callback.onSmsSendStarted(job);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error sending single-part SMS", e);
+            simDispatcher.release(job.jobId);
+            sendWindow.abort(job.jobId);
             if (callback != null) {
                 callback.onSmsSendFailed(job, "Error sending SMS: " + e.getMessage());
             }
@@ -82,33 +119,53 @@ public class SmsSender {
     }
 
     /**
-     * Send a multi-part SMS.
+     * Send a multi-part SMS, or only the parts listed in job.partsToSend on a retry.
+     * Every part gets its own sent/delivery intents so results can be tracked per part.
      */
-    private void sendMultiPartSms(SmsJobEntity job, ArrayList<String> parts,
-                                   SmsSenderCallback callback) {
+    private void sendMultiPartSms(SmsManager smsManager, SmsJobEntity job, ArrayList<String> allParts,
+                                  SmsSenderCallback callback) {
         try {
-            ArrayList<PendingIntent> sentIntents = new ArrayList<>();
-            ArrayList<PendingIntent> deliveryIntents = new ArrayList<>();
-
-            for (String part : parts) {
-                sentIntents.add(createSentIntent(job.jobId));
-                deliveryIntents.add(createDeliveryIntent(job.jobId));
+            int[] partIndices = job.partsToSend;
+            if (partIndices == null) {
+                partIndices = new int[allParts.size()];
+                for (int i = 0; i < partIndices.length; i++) {
+                    partIndices[i] = i;
+                }
+            }
+            // Queued on the database writer ahead of any SMS_SENT result for these parts
+            repository.createParts(job.jobId, partIndices, null);
+
+            ArrayList<String> parts = new ArrayList<>(partIndices.length);
+            ArrayList<PendingIntent> sentIntents = new ArrayList<>(partIndices.length);
+            ArrayList<PendingIntent> deliveryIntents = new ArrayList<>(partIndices.length);
+            for (int partIndex : partIndices) {
+                parts.add(allParts.get(partIndex));
+                sentIntents.add(createSentIntent(job.jobId, partIndex));
+                deliveryIntents.add(createDeliveryIntent(job.jobId, partIndex));
             }
 
-            smsManager.sendMultipartTextMessage(
-                    job.toNumber,
-                    null,
-                    parts,
-                    sentIntents,
-                    deliveryIntents
-            );
+            if (parts.size() == 1) {
+                smsManager.sendTextMessage(job.toNumber, null, parts.get(0),
+                        sentIntents.get(0), deliveryIntents.get(0));
+            } else {
+                smsManager.sendMultipartTextMessage(
+                        job.toNumber,
+                        null,
+                        parts,
+                        sentIntents,
+                        deliveryIntents
+                );
+            }
 
-            Log.i(TAG, "Multi-part SMS sent for job: " + job.jobId + " (" + parts.size() + " parts)");
+            Log.i(TAG, "Multi-part SMS sent for job: " + job.jobId + " (" + parts.size()
+                    + " of " + allParts.size() + " parts)");
             if (callback != null) {
                 callback.onSmsSendStarted(job);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error sending multi-part SMS", e);
+            simDispatcher.release(job.jobId);
+            sendWindow.abort(job.jobId);
             if (callback != null) {
                 callback.onSmsSendFailed(job, "Error sending SMS: " + e.getMessage());
             }
@@ -117,29 +174,32 @@ public class SmsSender {
 
     /**
      * Create a PendingIntent for SMS_SENT broadcast.
+     * partIndex is -1 for single-part jobs.
      */
-    private PendingIntent createSentIntent(String jobId) {
-        Intent intent = new Intent(ACTION_SMS_SENT);
-        intent.putExtra("job_id", jobId);
-        return PendingIntent.getBroadcast(
-                context,
-                jobId.hashCode(),  // use job ID as request code
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
+    private PendingIntent createSentIntent(String jobId, int partIndex) {
+        return createIntent(ACTION_SMS_SENT, jobId, partIndex);
     }
 
     /**
      * Create a PendingIntent for SMS delivery report.
      */
-    private PendingIntent createDeliveryIntent(String jobId) {
-        Intent intent = new Intent(SmsSentReceiver.ACTION_SMS_DELIVERED);
-        intent.putExtra("job_id", jobId);
+    private PendingIntent createDeliveryIntent(String jobId, int partIndex) {
+        return createIntent(SmsSentReceiver.ACTION_SMS_DELIVERED, jobId, partIndex);
+    }
+
+    private PendingIntent createIntent(String action, String jobId, int partIndex) {
+        Intent intent = new Intent(action);
+        intent.setPackage(context.getPackageName());
+        intent.putExtra(EXTRA_JOB_ID, jobId);
+        if (partIndex >= 0) {
+            intent.putExtra(EXTRA_PART_INDEX, partIndex);
+        }
+        // Extras don't distinguish PendingIntents, so every intent gets its own request code
         return PendingIntent.getBroadcast(
                 context,
-                (jobId + "_delivery").hashCode(),
+                (int) intentIds.next(),
                 intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+                PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE
         );
     }
 
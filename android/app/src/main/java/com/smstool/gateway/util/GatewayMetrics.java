@@ -0,0 +1,63 @@
+package com.smstool.gateway.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ * Used to observe gateway throughput and latency without a metrics library.
+ * GatewayForegroundService logs a snapshot to logcat every minute and when it stops.
+ */
+public final class GatewayMetrics {
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private GatewayMetrics() {
+    }
+
+    /**
+     * Get (or create) a named counter.
+     */
+    public static AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    /**
+     * Register a gauge whose value is read when a snapshot is taken.
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Get (or create) a named latency histogram.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Take a point-in-time snapshot of all metrics, sorted by name.
+     * Histograms are flattened to count, p50 and p99 entries.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            values.put(entry.getKey() + ".count", histogram.count());
+            values.put(entry.getKey() + ".p50_ms", histogram.percentile(50));
+            values.put(entry.getKey() + ".p99_ms", histogram.percentile(99));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,94 @@
+package com.smstool.gateway.util;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps common Unicode punctuation and Latin diacritics to GSM-7 equivalents,
+ * so a body with a single curly quote or accented letter is not forced into UCS-2.
+ * Characters with no GSM-7 equivalent (e.g. emoji, Cyrillic) are left unchanged.
+ */
+public final class GsmTransliterator {
+    private static final Map<Character, String> REPLACEMENTS = new HashMap<>();
+
+    static {
+        for (char c : "‘’‚‛′`´".toCharArray()) {
+            REPLACEMENTS.put(c, "'");
+        }
+        for (char c : "“”„‟″«»".toCharArray()) {
+            REPLACEMENTS.put(c, "\"");
+        }
+        for (char c : "‐‑‒–—―−".toCharArray()) {
+            REPLACEMENTS.put(c, "-");
+        }
+        // No-break, narrow and other typographic spaces
+        for (char c : ("\u00A0\u2000\u2001\u2002\u2003\u2004\u2005\u2006\u2007\u2008"
+                + "\u2009\u200A\u202F\u205F\u3000").toCharArray()) {
+            REPLACEMENTS.put(c, " ");
+        }
+        // Zero-width characters are dropped
+        for (char c : "\u200B\u200C\u200D\u2060\uFEFF".toCharArray()) {
+            REPLACEMENTS.put(c, "");
+        }
+        REPLACEMENTS.put('…', "...");
+        REPLACEMENTS.put('•', "*");
+        REPLACEMENTS.put('·', ".");
+        REPLACEMENTS.put('×', "x");
+        REPLACEMENTS.put('œ', "oe");
+        REPLACEMENTS.put('Œ', "OE");
+        REPLACEMENTS.put('ł', "l");
+        REPLACEMENTS.put('Ł', "L");
+        REPLACEMENTS.put('đ', "d");
+        REPLACEMENTS.put('Đ', "D");
+        REPLACEMENTS.put('ı', "i");
+        REPLACEMENTS.put('ħ', "h");
+        REPLACEMENTS.put('ç', "Ç");  // GSM-7 only has the capital form
+    }
+
+    private GsmTransliterator() {
+    }
+
+    /**
+     * Replace every non-GSM-7 character that has a GSM-7 equivalent.
+     */
+    public static String transliterate(String body) {
+        StringBuilder out = null;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            String replacement = SmsEncoder.isGsm7(c) ? null : replacementFor(c);
+            if (replacement == null) {
+                if (out != null) {
+                    out.append(c);
+                }
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder(body.length());
+                out.append(body, 0, i);
+            }
+            out.append(replacement);
+        }
+        return out != null ? out.toString() : body;
+    }
+
+    private static String replacementFor(char c) {
+        String replacement = REPLACEMENTS.get(c);
+        if (replacement != null) {
+            return replacement;
+        }
+
+        // Latin letter with diacritics: drop the combining marks if the base letter is GSM-7
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        if (decomposed.length() < 2) {
+            return null;
+        }
+        char base = decomposed.charAt(0);
+        for (int i = 1; i < decomposed.length(); i++) {
+            if (Character.getType(decomposed.charAt(i)) != Character.NON_SPACING_MARK) {
+                return null;
+            }
+        }
+        return SmsEncoder.isGsm7(base) ? String.valueOf(base) : null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.smstool.gateway.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor wrapper that reports how backed up its delegate is.
+ *
+ * Metrics, per executor name:
+ * - executor.<name>.queued tasks submitted but not started
+ * - executor.<name>.wait   time from submit to start
+ * - executor.<name>.run    time a task ran
+ */
+public class MeteredExecutor implements Executor {
+    private final Executor delegate;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LatencyHistogram waitTime;
+    private final LatencyHistogram runTime;
+
+    public MeteredExecutor(String name, Executor delegate) {
+        this.delegate = delegate;
+        this.waitTime = GatewayMetrics.histogram("executor." + name + ".wait");
+        this.runTime = GatewayMetrics.histogram("executor." + name + ".run");
+        GatewayMetrics.gauge("executor." + name + ".queued", queued::get);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submittedAt = System.currentTimeMillis();
+        queued.incrementAndGet();
+        delegate.execute(() -> {
+            long start = System.currentTimeMillis();
+            queued.decrementAndGet();
+            waitTime.record(start - submittedAt);
+            try {
+                task.run();
+            } finally {
+                runTime.record(System.currentTimeMillis() - start);
+            }
+        });
+    }
+}
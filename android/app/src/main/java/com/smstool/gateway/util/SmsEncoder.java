@@ -0,0 +1,160 @@
+package com.smstool.gateway.util;
+
+import java.util.ArrayList;
+
+/**
+ * Pure-Java SMS segment calculator (no framework calls, so it runs on the JVM).
+ * Classifies a body as GSM-7 (3GPP TS 23.038 default alphabet plus extension table)
+ * or UCS-2, and computes how it is split into concatenated SMS segments:
+ * - GSM-7: 160 septets in a single SMS, 153 per segment; extension characters take two
+ *   septets and are never split from their escape.
+ * - UCS-2: 70 UTF-16 units in a single SMS, 67 per segment; surrogate pairs are never split.
+ */
+public final class SmsEncoder {
+    public static final String GSM_7 = "gsm7";
+    public static final String UCS_2 = "ucs2";
+
+    private static final int GSM7_SINGLE = 160;
+    private static final int GSM7_MULTI = 153;
+    private static final int UCS2_SINGLE = 70;
+    private static final int UCS2_MULTI = 67;
+
+    private static final String GSM7_BASIC =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?"
+                    + "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+    private static final String GSM7_EXTENSION = "\f^{}\\[~]|€";
+
+    // Septet cost per char below 0x400 (covers Latin-1 and Greek): 0 = not in GSM-7
+    private static final byte[] COST = new byte[0x400];
+
+    static {
+        for (int i = 0; i < GSM7_BASIC.length(); i++) {
+            COST[GSM7_BASIC.charAt(i)] = 1;
+        }
+        for (int i = 0; i < GSM7_EXTENSION.length(); i++) {
+            char c = GSM7_EXTENSION.charAt(i);
+            if (c < COST.length) {
+                COST[c] = 2;
+            }
+        }
+    }
+
+    private SmsEncoder() {
+    }
+
+    /**
+     * Classify and split a message body.
+     */
+    public static Segmentation segment(String body) {
+        int septets = 0;
+        for (int i = 0; i < body.length(); i++) {
+            int cost = septets(body.charAt(i));
+            if (cost == 0) {
+                return splitUcs2(body);
+            }
+            septets += cost;
+        }
+        return splitGsm7(body, septets);
+    }
+
+    private static Segmentation splitGsm7(String body, int totalSeptets) {
+        if (totalSeptets <= GSM7_SINGLE) {
+            return new Segmentation(GSM_7, new int[]{0});
+        }
+
+        int[] starts = new int[(totalSeptets + GSM7_MULTI - 1) / GSM7_MULTI + 1];
+        int count = 1;
+        int used = 0;
+        for (int i = 0; i < body.length(); i++) {
+            int cost = septets(body.charAt(i));
+            if (used + cost > GSM7_MULTI) {
+                starts = ensure(starts, count);
+                starts[count++] = i;
+                used = 0;
+            }
+            used += cost;
+        }
+        return new Segmentation(GSM_7, trim(starts, count));
+    }
+
+    private static Segmentation splitUcs2(String body) {
+        if (body.length() <= UCS2_SINGLE) {
+            return new Segmentation(UCS_2, new int[]{0});
+        }
+
+        int[] starts = new int[body.length() / (UCS2_MULTI - 1) + 2];
+        int count = 1;
+        int start = 0;
+        while (body.length() - start > UCS2_MULTI) {
+            int end = start + UCS2_MULTI;
+            if (Character.isLowSurrogate(body.charAt(end))) {
+                end--;  // keep the pair together
+            }
+            starts = ensure(starts, count);
+            starts[count++] = end;
+            start = end;
+        }
+        return new Segmentation(UCS_2, trim(starts, count));
+    }
+
+    /**
+     * Check whether a character can be sent in GSM-7 (default alphabet or extension table).
+     */
+    public static boolean isGsm7(char c) {
+        return septets(c) != 0;
+    }
+
+    private static int septets(char c) {
+        if (c < COST.length) {
+            return COST[c];
+        }
+        return c == '€' ? 2 : 0;
+    }
+
+    private static int[] ensure(int[] array, int index) {
+        if (index < array.length) {
+            return array;
+        }
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] trim(int[] array, int length) {
+        if (array.length == length) {
+            return array;
+        }
+        int[] trimmed = new int[length];
+        System.arraycopy(array, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    /**
+     * Encoding and segment boundaries of a body.
+     */
+    public static final class Segmentation {
+        public final String encoding;   // GSM_7 or UCS_2
+        public final int[] splitPoints; // char index at which each segment starts
+
+        Segmentation(String encoding, int[] splitPoints) {
+            this.encoding = encoding;
+            this.splitPoints = splitPoints;
+        }
+
+        public int segmentCount() {
+            return splitPoints.length;
+        }
+
+        /**
+         * Cut the body into its segments.
+         */
+        public ArrayList<String> split(String body) {
+            ArrayList<String> parts = new ArrayList<>(splitPoints.length);
+            for (int i = 0; i < splitPoints.length; i++) {
+                int end = i + 1 < splitPoints.length ? splitPoints[i + 1] : body.length();
+                parts.add(body.substring(splitPoints[i], end));
+            }
+            return parts;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.smstool.gateway;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Minimal harness for the JVM microbenchmarks: warms an operation up, then reports the
+ * median time per operation over several rounds and the bytes it allocates per operation.
+ */
+public final class MicroBenchmark {
+    private static final int ROUNDS = 7;
+
+    /** An operation under test; its result is consumed so the JIT cannot drop the work. */
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    /** Time and allocation per operation. */
+    public static final class Result {
+        public final double nanosPerOp;
+        public final double bytesPerOp;  // -1 if the JVM cannot count allocations
+
+        Result(double nanosPerOp, double bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f ns/op, %.0f B/op", nanosPerOp, bytesPerOp);
+        }
+    }
+
+    private static Object sink;  // every result escapes here, so none can be optimized away
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Run `op` `iterations` times per round: a few warm-up rounds, then ROUNDS measured rounds.
+     */
+    public static Result measure(int iterations, Op op) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            runRound(iterations, op);
+        }
+
+        long[] times = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            runRound(iterations, op);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+
+        long before = allocatedBytes();
+        runRound(iterations, op);
+        long allocated = allocatedBytes() - before;
+
+        return new Result((double) times[ROUNDS / 2] / iterations,
+                before < 0 ? -1 : (double) allocated / iterations);
+    }
+
+    private static void runRound(int iterations, Op op) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            sink = op.run();
+        }
+    }
+
+    // Bytes allocated so far by the current thread, or -1 if unsupported
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,47 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertTrue;
+
+import com.smstool.gateway.MicroBenchmark;
+import com.smstool.gateway.network.message.SmsJobMessage;
+
+import org.junit.Test;
+
+/**
+ * Encode and decode speed of the binary codec against the JSON frames it stands in for:
+ * status_update encoding (device → server) and sms_job decoding (server → device).
+ */
+public class BinaryCodecBenchmarkTest {
+    private static final int ITERATIONS = 50_000;
+
+    @Test
+    public void binaryEncodesStatusUpdateFasterThanJson() throws Exception {
+        StatusUpdate update = new StatusUpdate("job-000123456", "failed_retrying", 2, 1,
+                "Generic failure", 1_700_000_000_123L);
+        String messageId = MessageWriter.nextMessageId();
+
+        MicroBenchmark.Result json = MicroBenchmark.measure(ITERATIONS,
+                () -> MessageParser.createStatusUpdateMessage(update, 1234));
+        MicroBenchmark.Result binary = MicroBenchmark.measure(ITERATIONS,
+                () -> BinaryCodec.encodeStatusUpdate(messageId, 1234, update));
+        System.out.println("status_update encode: JSON " + json + ", binary " + binary);
+
+        assertTrue("binary " + binary + " vs JSON " + json, binary.nanosPerOp < json.nanosPerOp);
+    }
+
+    @Test
+    public void binaryDecodesSmsJobFasterThanJson() throws Exception {
+        SmsJobMessage job = new SmsJobMessage("3f2b8c1e-9d4a-4e57-b1c6-0a7d5e2f8b93", "job-000123456",
+                "+15550100", "Your verification code is 482913. It expires in 10 minutes.", 3, 123456L, 1, false);
+        String jsonFrame = "{\"type\":\"sms_job\",\"message_id\":\"" + job.messageId + "\",\"job_id\":\"" + job.jobId
+                + "\",\"to\":\"" + job.to + "\",\"body\":\"" + job.body + "\",\"max_retries\":3,\"seq\":123456,"
+                + "\"priority\":1}";
+        byte[] binaryFrame = BinaryCodec.encodeSmsJob(job);
+
+        MicroBenchmark.Result json = MicroBenchmark.measure(ITERATIONS, () -> MessageDecoder.decode(jsonFrame));
+        MicroBenchmark.Result binary = MicroBenchmark.measure(ITERATIONS, () -> BinaryCodec.decode(binaryFrame));
+        System.out.println("sms_job decode: JSON " + json + ", binary " + binary);
+
+        assertTrue("binary " + binary + " vs JSON " + json, binary.nanosPerOp < json.nanosPerOp);
+    }
+}
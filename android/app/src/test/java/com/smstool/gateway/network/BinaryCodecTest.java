@@ -0,0 +1,324 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gson.JsonParser;
+import com.smstool.gateway.data.model.SmsJobStatus;
+import com.smstool.gateway.network.message.PingMessage;
+import com.smstool.gateway.network.message.SmsJobBatchMessage;
+import com.smstool.gateway.network.message.SmsJobMessage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void smsJobRoundTrip() throws IOException {
+        SmsJobMessage job = new SmsJobMessage("m-1", "job-1", "+15550100", "Grüße 😀", 5,
+                41L, -2, true);
+
+        SmsJobMessage decoded = (SmsJobMessage) BinaryCodec.decode(BinaryCodec.encodeSmsJob(job));
+
+        assertJobEquals(job, decoded);
+    }
+
+    @Test
+    public void smsJobOptionalFieldsRoundTripAsNull() throws IOException {
+        SmsJobMessage job = new SmsJobMessage(null, "job-2", "+15550101", "", null, null, null, false);
+
+        SmsJobMessage decoded = (SmsJobMessage) BinaryCodec.decode(BinaryCodec.encodeSmsJob(job));
+
+        assertJobEquals(job, decoded);
+    }
+
+    @Test
+    public void smsJobBatchRoundTrip() throws IOException {
+        List<SmsJobMessage> jobs = Arrays.asList(
+                new SmsJobMessage("m-1", "job-1", "+15550100", "one", 3, 0L, 10, false),
+                new SmsJobMessage("m-2", "job-2", "+15550101", "two", null, 1L, null, true));
+
+        SmsJobBatchMessage decoded = (SmsJobBatchMessage) BinaryCodec.decode(
+                BinaryCodec.encodeSmsJobBatch("batch-1", jobs));
+
+        assertEquals("batch-1", decoded.messageId);
+        assertEquals(2, decoded.jobs.size());
+        assertJobEquals(jobs.get(0), decoded.jobs.get(0));
+        assertJobEquals(jobs.get(1), decoded.jobs.get(1));
+    }
+
+    @Test
+    public void everyStatusRoundTrips() throws IOException {
+        for (SmsJobStatus status : SmsJobStatus.values()) {
+            StatusUpdate update = new StatusUpdate("job-1", status.getValue(), 2, -7, "boom", 1700000000123L);
+
+            List<StatusUpdate> decoded = BinaryCodec.decodeStatusUpdates(
+                    BinaryCodec.encodeStatusUpdate("m-1", 9, update));
+
+            assertEquals(1, decoded.size());
+            assertStatusEquals(update, decoded.get(0));
+        }
+    }
+
+    @Test
+    public void statusCodesAreFixedOnTheWire() {
+        // version, type, message_id (null), seq, job_id "j", then the status byte
+        byte[] frame = BinaryCodec.encodeStatusUpdate(null, 0,
+                new StatusUpdate("j", SmsJobStatus.DELIVERED.getValue(), 0, null, null, 0));
+
+        assertEquals(2, frame[0]);
+        assertEquals(4, frame[6]);
+    }
+
+    @Test
+    public void statusBatchRoundTrip() throws IOException {
+        List<StatusUpdate> updates = Arrays.asList(
+                new StatusUpdate("job-1", "sent", 0, null, null, 1000),
+                new StatusUpdate("job-2", "failed_retrying", 1, 1, "radio off", 2000));
+
+        List<StatusUpdate> decoded = BinaryCodec.decodeStatusUpdates(
+                BinaryCodec.encodeStatusBatch("m-1", 10, updates));
+
+        assertEquals(2, decoded.size());
+        assertStatusEquals(updates.get(0), decoded.get(0));
+        assertStatusEquals(updates.get(1), decoded.get(1));
+    }
+
+    @Test
+    public void pingIsPeekedAndAnswered() throws IOException {
+        byte[] ping = BinaryCodec.encodePing("ping-1", 1000);
+
+        PingMessage peeked = BinaryCodec.peekPing(ping);
+        assertEquals("ping-1", peeked.messageId);
+        assertEquals("ping-1", ((PingMessage) BinaryCodec.decode(ping)).messageId);
+        assertNull(BinaryCodec.peekPing(BinaryCodec.encodeSmsJob(
+                new SmsJobMessage("m", "j", "t", "b", null, null, null, false))));
+
+        assertEquals("ping-1", BinaryCodec.decodePongPingId(BinaryCodec.encodePong("m-2", "ping-1", 2000)));
+    }
+
+    @Test
+    public void framesOfAnotherVersionAreRejected() {
+        byte[] frame = BinaryCodec.encodePing("ping-1", 1000);
+        frame[0] = 1;
+
+        assertNull(BinaryCodec.peekPing(frame));
+        assertDecodeFails(frame);
+    }
+
+    @Test
+    public void truncatedFramesAreRejected() {
+        byte[] frame = BinaryCodec.encodeSmsJob(
+                new SmsJobMessage("m-1", "job-1", "+15550100", "hello", 3, 1L, 0, false));
+
+        for (int length = 0; length < frame.length; length++) {
+            assertDecodeFails(Arrays.copyOf(frame, length));
+        }
+    }
+
+    @Test
+    public void unknownStatusCodeIsRejected() {
+        byte[] frame = BinaryCodec.encodeStatusUpdate(null, 0,
+                new StatusUpdate("j", SmsJobStatus.SENT.getValue(), 0, null, null, 0));
+        frame[6] = 99;
+
+        try {
+            BinaryCodec.decodeStatusUpdates(frame);
+            fail("decoded an unknown status code");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("99"));
+        }
+    }
+
+    // Conformance: exact bytes of each frame type, as a peer implementation must produce them
+
+    @Test
+    public void smsJobWireFormat() {
+        byte[] frame = BinaryCodec.encodeSmsJob(
+                new SmsJobMessage("m-1", "job-1", "+1", "hi", 3, 0L, null, true));
+
+        assertArrayEquals(bytes(
+                0x02, 0x01,                          // version 2, sms_job
+                0x04, 'm', '-', '1',                 // message_id, length + 1
+                0x06, 'j', 'o', 'b', '-', '1',       // job_id
+                0x03, '+', '1',                      // to
+                0x03, 'h', 'i',                      // body
+                0x07,                                // max_retries 3: zigzag 6, + 1
+                0x01,                                // seq 0, + 1
+                0x00,                                // priority null
+                0x01), frame);                       // transliterate
+    }
+
+    @Test
+    public void statusUpdateWireFormat() {
+        byte[] frame = BinaryCodec.encodeStatusUpdate("m", 300,
+                new StatusUpdate("job-1", "delivered", 1, -1, null, 1_700_000_000_123L));
+
+        assertArrayEquals(bytes(
+                0x02, 0x02,                          // version 2, status_update
+                0x02, 'm',                           // message_id
+                0xac, 0x02,                          // seq 300
+                0x06, 'j', 'o', 'b', '-', '1',       // job_id
+                0x04,                                // delivered
+                0x01,                                // attempt
+                0x02,                                // error_code -1: zigzag 1, + 1
+                0x00,                                // error_message null
+                0xfb, 0xd0, 0x95, 0xff, 0xbc, 0x31), frame);  // timestamp
+    }
+
+    @Test
+    public void statusBatchWireFormat() {
+        byte[] frame = BinaryCodec.encodeStatusBatch("m", 1, Arrays.asList(
+                new StatusUpdate("a", "queued", 0, null, null, 0),
+                new StatusUpdate("b", "failed_permanent", 2, 0, "", 127)));
+
+        assertArrayEquals(bytes(
+                0x02, 0x05, 0x02, 'm', 0x01,         // version, status_batch, message_id, seq
+                0x02,                                // two updates
+                0x02, 'a', 0x01, 0x00, 0x00, 0x00, 0x00,
+                0x02, 'b', 0x06, 0x02, 0x01, 0x01, 0x7f), frame);  // "" is 0x01, null is 0x00
+    }
+
+    @Test
+    public void pingAndPongWireFormat() {
+        assertArrayEquals(bytes(0x02, 0x03, 0x02, 'p', 0x00), BinaryCodec.encodePing("p", 0));
+        assertArrayEquals(bytes(0x02, 0x04, 0x02, 'p', 0x05, 'p', 'i', 'n', 'g', 0x80, 0x01),
+                BinaryCodec.encodePong("p", "ping", 128));
+    }
+
+    @Test
+    public void varintBoundariesRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE - 1};
+        for (long value : values) {
+            SmsJobMessage job = new SmsJobMessage("m", "j", "t", "b", null, value, null, false);
+            assertEquals(Long.valueOf(value), ((SmsJobMessage) BinaryCodec.decode(BinaryCodec.encodeSmsJob(job))).seq);
+
+            StatusUpdate update = new StatusUpdate("j", "sent", (int) Math.min(value, Integer.MAX_VALUE),
+                    null, null, value);
+            assertStatusEquals(update, BinaryCodec.decodeStatusUpdates(
+                    BinaryCodec.encodeStatusUpdate("m", value, update)).get(0));
+        }
+    }
+
+    @Test
+    public void nullableIntBoundariesRoundTrip() throws IOException {
+        int[] values = {0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            SmsJobMessage job = new SmsJobMessage("m", "j", "t", "b", value, null, value, false);
+            assertJobEquals(job, (SmsJobMessage) BinaryCodec.decode(BinaryCodec.encodeSmsJob(job)));
+        }
+    }
+
+    @Test
+    public void longStringsRoundTrip() throws IOException {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 5_000) {
+            body.append("Grüße 😀 ");
+        }
+        SmsJobMessage job = new SmsJobMessage("m", "j", "+15550100", body.toString(), null, null, null, false);
+
+        assertJobEquals(job, (SmsJobMessage) BinaryCodec.decode(BinaryCodec.encodeSmsJob(job)));
+    }
+
+    @Test
+    public void largeBatchRoundTrips() throws IOException {
+        List<SmsJobMessage> jobs = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            jobs.add(new SmsJobMessage("m-" + i, "job-" + i, "+1555" + i, "body " + i, i % 5, (long) i, i % 3, i % 2 == 0));
+        }
+
+        SmsJobBatchMessage decoded = (SmsJobBatchMessage) BinaryCodec.decode(
+                BinaryCodec.encodeSmsJobBatch("batch", jobs));
+
+        assertEquals(jobs.size(), decoded.jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            assertJobEquals(jobs.get(i), decoded.jobs.get(i));
+        }
+    }
+
+    @Test
+    public void malformedFramesAreRejected() {
+        assertDecodeFails(bytes(0x02, 0x09));                      // unknown type
+        assertDecodeFails(bytes(0x02, 0x02, 0x00, 0x00));          // status_update is not device-bound
+        assertDecodeFails(bytes(0x02, 0x01, 0x80, 0x80, 0x80, 0x80, 0x80,
+                0x80, 0x80, 0x80, 0x80, 0x80, 0x01));                // varint longer than 64 bits
+        assertDecodeFails(bytes(0x02, 0x06, 0x00, 0xff, 0xff, 0xff, 0x0f));  // batch count beyond the frame
+        assertDecodeFails(bytes(0x02, 0x01, 0x7f, 'x'));           // string length beyond the frame
+    }
+
+    @Test
+    public void statusUpdateIsUnderAThirdOfJson() throws IOException {
+        StatusUpdate update = new StatusUpdate("job-000123456", "failed_retrying", 2, 1,
+                "Generic failure", 1_700_000_000_123L);
+        String json = MessageParser.createStatusUpdateMessage(update, 1234);
+        String messageId = JsonParser.parseString(json).getAsJsonObject().get("message_id").getAsString();
+
+        byte[] binary = BinaryCodec.encodeStatusUpdate(messageId, 1234, update);
+
+        int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(binary.length + " bytes vs " + jsonBytes + " JSON", binary.length * 3 < jsonBytes);
+        assertStatusEquals(update, BinaryCodec.decodeStatusUpdates(binary).get(0));
+    }
+
+    @Test
+    public void statusBatchIsUnderAQuarterOfJson() {
+        List<StatusUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            updates.add(new StatusUpdate("job-" + (100_000 + i), "delivered", 1, null, null,
+                    1_700_000_000_000L + i * 37));
+        }
+        String json = MessageParser.createStatusBatchMessage(updates, 77);
+        String messageId = JsonParser.parseString(json).getAsJsonObject().get("message_id").getAsString();
+
+        byte[] binary = BinaryCodec.encodeStatusBatch(messageId, 77, updates);
+
+        int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(binary.length + " bytes vs " + jsonBytes + " JSON", binary.length * 4 < jsonBytes);
+    }
+
+    private static void assertDecodeFails(byte[] frame) {
+        try {
+            BinaryCodec.decode(frame);
+            fail("decoded " + Arrays.toString(frame));
+        } catch (IOException expected) {
+            // malformed frames surface as IOException, never as a half-filled message
+        }
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static void assertJobEquals(SmsJobMessage expected, SmsJobMessage actual) {
+        assertEquals(expected.messageId, actual.messageId);
+        assertEquals(expected.jobId, actual.jobId);
+        assertEquals(expected.to, actual.to);
+        assertEquals(expected.body, actual.body);
+        assertEquals(expected.maxRetries, actual.maxRetries);
+        assertEquals(expected.seq, actual.seq);
+        assertEquals(expected.priority, actual.priority);
+        assertEquals(expected.transliterate, actual.transliterate);
+    }
+
+    private static void assertStatusEquals(StatusUpdate expected, StatusUpdate actual) {
+        assertEquals(expected.jobId, actual.jobId);
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.attempt, actual.attempt);
+        assertEquals(expected.errorCode, actual.errorCode);
+        assertEquals(expected.errorMessage, actual.errorMessage);
+        assertEquals(expected.timestamp, actual.timestamp);
+    }
+}
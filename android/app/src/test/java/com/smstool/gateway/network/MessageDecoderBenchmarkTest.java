@@ -0,0 +1,61 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.smstool.gateway.MicroBenchmark;
+import com.smstool.gateway.network.message.SmsJobMessage;
+
+import org.junit.Test;
+
+/**
+ * Streaming decode of an sms_job frame against the tree parse it replaced, which parsed each
+ * frame into a JsonObject once for the type and again for the fields.
+ */
+public class MessageDecoderBenchmarkTest {
+    private static final int ITERATIONS = 50_000;
+    private static final String FRAME = "{\"type\":\"sms_job\",\"message_id\":\"3f2b8c1e-9d4a-4e57-b1c6-0a7d5e2f8b93\","
+            + "\"job_id\":\"job-000123456\",\"to\":\"+15550100\","
+            + "\"body\":\"Your verification code is 482913. It expires in 10 minutes.\","
+            + "\"max_retries\":3,\"seq\":123456,\"priority\":1}";
+
+    @Test
+    public void streamingDecodeBeatsTreeParse() throws Exception {
+        assertEquals(treeParse(FRAME).jobId, ((SmsJobMessage) MessageDecoder.decode(FRAME)).jobId);
+
+        MicroBenchmark.Result tree = MicroBenchmark.measure(ITERATIONS, () -> treeParse(FRAME));
+        MicroBenchmark.Result streaming = MicroBenchmark.measure(ITERATIONS, () -> MessageDecoder.decode(FRAME));
+        System.out.println("sms_job decode: tree parse " + tree + ", streaming " + streaming);
+
+        assertTrue("streaming " + streaming + " vs tree " + tree, streaming.nanosPerOp < tree.nanosPerOp);
+        if (tree.bytesPerOp >= 0) {
+            assertTrue("streaming " + streaming + " vs tree " + tree, streaming.bytesPerOp < tree.bytesPerOp);
+        }
+    }
+
+    // The old MessageParser path: getMessageType(), then parseMessage() and the field getters
+    private static SmsJobMessage treeParse(String text) {
+        JsonObject typed = JsonParser.parseString(text).getAsJsonObject();
+        String type = typed.has("type") ? typed.get("type").getAsString() : null;
+        if (!"sms_job".equals(type)) {
+            return null;
+        }
+        JsonObject json = JsonParser.parseString(text).getAsJsonObject();
+        return new SmsJobMessage(stringField(json, "message_id"), stringField(json, "job_id"),
+                stringField(json, "to"), stringField(json, "body"), intField(json, "max_retries"),
+                json.has("seq") ? json.get("seq").getAsLong() : null, intField(json, "priority"), false);
+    }
+
+    private static String stringField(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value != null && !value.isJsonNull() ? value.getAsString() : null;
+    }
+
+    private static Integer intField(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value != null && !value.isJsonNull() ? value.getAsInt() : null;
+    }
+}
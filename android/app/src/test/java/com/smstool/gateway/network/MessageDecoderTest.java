@@ -0,0 +1,226 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.smstool.gateway.network.message.ConfigMessage;
+import com.smstool.gateway.network.message.ErrorMessage;
+import com.smstool.gateway.network.message.InboundMessage;
+import com.smstool.gateway.network.message.PingMessage;
+import com.smstool.gateway.network.message.SmsJobBatchMessage;
+import com.smstool.gateway.network.message.SmsJobMessage;
+import com.smstool.gateway.network.message.UnknownMessage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class MessageDecoderTest {
+
+    @Test
+    public void decodesSmsJob() throws IOException {
+        SmsJobMessage job = (SmsJobMessage) MessageDecoder.decode("{\"type\":\"sms_job\","
+                + "\"message_id\":\"m-1\",\"job_id\":\"job-1\",\"to\":\"+15550100\","
+                + "\"body\":\"Your code is 1234\",\"max_retries\":5,\"seq\":9000000000,"
+                + "\"priority\":2,\"transliterate\":true}");
+
+        assertEquals("m-1", job.messageId);
+        assertEquals("job-1", job.jobId);
+        assertEquals("+15550100", job.to);
+        assertEquals("Your code is 1234", job.body);
+        assertEquals(Integer.valueOf(5), job.maxRetries);
+        assertEquals(Long.valueOf(9_000_000_000L), job.seq);
+        assertEquals(Integer.valueOf(2), job.priority);
+        assertTrue(job.transliterate);
+        assertTrue(job.isComplete());
+    }
+
+    @Test
+    public void typeMayComeAfterTheFields() throws IOException {
+        SmsJobMessage job = (SmsJobMessage) MessageDecoder.decode(
+                "{\"body\":\"hi\",\"to\":\"+15550100\",\"job_id\":\"job-1\",\"type\":\"sms_job\"}");
+
+        assertEquals("job-1", job.jobId);
+        assertEquals("hi", job.body);
+        assertNull(job.maxRetries);
+        assertNull(job.seq);
+        assertNull(job.priority);
+        assertFalse(job.transliterate);
+    }
+
+    @Test
+    public void missingOrNullFieldsLeaveJobIncomplete() throws IOException {
+        SmsJobMessage job = (SmsJobMessage) MessageDecoder.decode(
+                "{\"type\":\"sms_job\",\"job_id\":\"job-1\",\"to\":null,\"max_retries\":null}");
+
+        assertNull(job.to);
+        assertNull(job.body);
+        assertNull(job.maxRetries);
+        assertFalse(job.isComplete());
+    }
+
+    @Test
+    public void numbersMayBeSentAsStrings() throws IOException {
+        SmsJobMessage job = (SmsJobMessage) MessageDecoder.decode("{\"type\":\"sms_job\","
+                + "\"job_id\":42,\"to\":\"+15550100\",\"body\":\"hi\",\"max_retries\":\"3\",\"seq\":\"17\"}");
+
+        assertEquals("42", job.jobId);
+        assertEquals(Integer.valueOf(3), job.maxRetries);
+        assertEquals(Long.valueOf(17), job.seq);
+    }
+
+    @Test
+    public void decodesSmsJobBatch() throws IOException {
+        SmsJobBatchMessage batch = (SmsJobBatchMessage) MessageDecoder.decode("{\"type\":\"sms_job_batch\","
+                + "\"message_id\":\"b-1\",\"jobs\":["
+                + "{\"job_id\":\"job-1\",\"to\":\"+15550100\",\"body\":\"one\",\"seq\":1},"
+                + "7,null,\"junk\","
+                + "{\"job_id\":\"job-2\",\"to\":\"+15550101\",\"body\":\"two\",\"seq\":2,\"priority\":1}]}");
+
+        assertEquals("b-1", batch.messageId);
+        assertEquals(2, batch.jobs.size());
+        assertEquals("job-1", batch.jobs.get(0).jobId);
+        assertEquals(Long.valueOf(1), batch.jobs.get(0).seq);
+        assertEquals("job-2", batch.jobs.get(1).jobId);
+        assertEquals(Integer.valueOf(1), batch.jobs.get(1).priority);
+    }
+
+    @Test
+    public void batchWithoutJobsIsEmpty() throws IOException {
+        SmsJobBatchMessage missing = (SmsJobBatchMessage) MessageDecoder.decode("{\"type\":\"sms_job_batch\"}");
+        SmsJobBatchMessage nulled = (SmsJobBatchMessage) MessageDecoder.decode(
+                "{\"type\":\"sms_job_batch\",\"jobs\":null}");
+
+        assertTrue(missing.jobs.isEmpty());
+        assertTrue(nulled.jobs.isEmpty());
+    }
+
+    @Test
+    public void decodesPing() throws IOException {
+        InboundMessage message = MessageDecoder.decode("{\"type\":\"ping\",\"message_id\":\"p-1\"}");
+
+        assertTrue(message instanceof PingMessage);
+        assertEquals("p-1", message.messageId);
+    }
+
+    @Test
+    public void decodesError() throws IOException {
+        ErrorMessage error = (ErrorMessage) MessageDecoder.decode("{\"type\":\"error\","
+                + "\"message_id\":\"e-1\",\"code\":\"rate_limited\",\"detail\":\"slow down\"}");
+
+        assertEquals("e-1", error.messageId);
+        assertEquals("rate_limited", error.code);
+        assertEquals("slow down", error.detail);
+    }
+
+    @Test
+    public void decodesConfig() throws IOException {
+        ConfigMessage config = (ConfigMessage) MessageDecoder.decode("{\"type\":\"config\","
+                + "\"send_burst\":10,\"send_rate_per_minute\":30,\"send_window\":4,\"status_batch\":true}");
+
+        assertEquals(Integer.valueOf(10), config.sendBurst);
+        assertEquals(Integer.valueOf(30), config.sendRatePerMinute);
+        assertEquals(Integer.valueOf(4), config.sendWindow);
+        assertEquals(Boolean.TRUE, config.statusBatch);
+    }
+
+    @Test
+    public void configLeavesMissingSettingsNull() throws IOException {
+        ConfigMessage config = (ConfigMessage) MessageDecoder.decode("{\"type\":\"config\",\"send_burst\":5}");
+
+        assertEquals(Integer.valueOf(5), config.sendBurst);
+        assertNull(config.sendRatePerMinute);
+        assertNull(config.sendWindow);
+        assertNull(config.statusBatch);
+    }
+
+    @Test
+    public void unknownTypeKeepsTypeAndId() throws IOException {
+        UnknownMessage message = (UnknownMessage) MessageDecoder.decode(
+                "{\"type\":\"shutdown\",\"message_id\":\"u-1\",\"reason\":\"maintenance\"}");
+
+        assertEquals("shutdown", message.type);
+        assertEquals("u-1", message.messageId);
+    }
+
+    @Test
+    public void missingTypeIsUnknown() throws IOException {
+        UnknownMessage message = (UnknownMessage) MessageDecoder.decode("{\"message_id\":\"u-2\"}");
+
+        assertNull(message.type);
+        assertEquals("u-2", message.messageId);
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws IOException {
+        SmsJobMessage job = (SmsJobMessage) MessageDecoder.decode("{\"type\":\"sms_job\","
+                + "\"trace\":{\"span\":\"abc\",\"tags\":[1,{\"to\":\"+19990000\"},[true]]},"
+                + "\"job_id\":\"job-1\",\"extra\":[\"body\",\"to\"],\"to\":\"+15550100\","
+                + "\"flag\":false,\"body\":\"hi\",\"ratio\":0.5,\"nothing\":null}");
+
+        assertEquals("job-1", job.jobId);
+        assertEquals("+15550100", job.to);
+        assertEquals("hi", job.body);
+    }
+
+    @Test
+    public void malformedFramesThrow() {
+        String[] frames = {
+                "",
+                "not json",
+                "{\"type\":\"sms_job\",\"job_id\":",
+                "{\"type\":\"sms_job\" \"job_id\":\"job-1\"}",
+                "[{\"type\":\"ping\"}]",
+                "\"ping\"",
+                "{\"type\":\"sms_job\",\"max_retries\":\"three\"}",
+                "{\"type\":\"sms_job\",\"seq\":1.5}",
+                "{\"type\":\"sms_job_batch\",\"jobs\":{\"job_id\":\"job-1\"}}"
+        };
+        for (String frame : frames) {
+            assertThrows(frame, IOException.class, () -> MessageDecoder.decode(frame));
+        }
+    }
+
+    @Test
+    public void peekPingAnswersSmallPings() {
+        PingMessage ping = MessageDecoder.peekPing("{\"type\":\"ping\",\"message_id\":\"p-1\"}");
+
+        assertNotNull(ping);
+        assertEquals("p-1", ping.messageId);
+    }
+
+    @Test
+    public void peekPingAcceptsFramesUpTo256Chars() throws IOException {
+        String atLimit = pingOfLength(256);
+        String overLimit = pingOfLength(257);
+
+        assertNotNull(MessageDecoder.peekPing(atLimit));
+        assertNull(MessageDecoder.peekPing(overLimit));
+        // Longer pings still decode normally, just not on the fast path
+        assertTrue(MessageDecoder.decode(overLimit) instanceof PingMessage);
+    }
+
+    @Test
+    public void peekPingIgnoresOtherFrames() {
+        assertNull(MessageDecoder.peekPing("{\"type\":\"pong\",\"message_id\":\"p-1\"}"));
+        assertNull(MessageDecoder.peekPing("{\"type\":\"sms_job\",\"job_id\":\"job-1\","
+                + "\"to\":\"+15550100\",\"body\":\"ping\"}"));
+        assertNull(MessageDecoder.peekPing("{\"type\":\"ping\""));
+        assertNull(MessageDecoder.peekPing("[\"ping\"]"));
+    }
+
+    // A ping frame padded with an unknown field to exactly `length` chars
+    private static String pingOfLength(int length) {
+        String prefix = "{\"type\":\"ping\",\"message_id\":\"p-1\",\"pad\":\"";
+        String suffix = "\"}";
+        StringBuilder frame = new StringBuilder(prefix);
+        while (frame.length() < length - suffix.length()) {
+            frame.append('x');
+        }
+        return frame.append(suffix).toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.smstool.gateway.MicroBenchmark;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Bytes allocated per status_update frame: MessageWriter against the JsonObject, UUID and
+ * Instant.toString() path it replaced.
+ */
+public class MessageWriterBenchmarkTest {
+    private static final int ITERATIONS = 50_000;
+
+    @Test
+    public void writerAllocatesLessThanGson() throws Exception {
+        StatusUpdate update = new StatusUpdate("job-000123456", "failed_retrying", 2, 4,
+                "Generic failure", 1_700_000_000_123L);
+
+        MicroBenchmark.Result gson = MicroBenchmark.measure(ITERATIONS, () -> gsonStatusUpdate(update));
+        MicroBenchmark.Result writer = MicroBenchmark.measure(ITERATIONS,
+                () -> MessageParser.createStatusUpdateMessage(update, 99L));
+        System.out.println("status_update: Gson " + gson + ", MessageWriter " + writer);
+
+        Assume.assumeTrue("allocation counting unsupported", gson.bytesPerOp >= 0);
+        // The JsonObject tree and the UUID were most of it; the writer leaves little more than the frame
+        assertTrue("writer " + writer + " vs gson " + gson, writer.bytesPerOp * 2 < gson.bytesPerOp);
+    }
+
+    // The old MessageParser.createStatusUpdateMessage
+    private static String gsonStatusUpdate(StatusUpdate update) {
+        JsonObject msg = new JsonObject();
+        msg.addProperty("type", "status_update");
+        msg.addProperty("message_id", UUID.randomUUID().toString());
+        msg.addProperty("seq", 99L);
+        msg.addProperty("job_id", update.jobId);
+        msg.addProperty("status", update.status);
+        msg.addProperty("attempt", update.attempt);
+        if (update.errorCode != null) {
+            msg.addProperty("error_code", update.errorCode);
+        } else {
+            msg.add("error_code", JsonNull.INSTANCE);
+        }
+        if (update.errorMessage != null) {
+            msg.addProperty("error_message", update.errorMessage);
+        } else {
+            msg.add("error_message", JsonNull.INSTANCE);
+        }
+        msg.addProperty("timestamp", Instant.ofEpochMilli(update.timestamp).toString());
+        return msg.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Each outgoing frame against the same fields written through a Gson JsonObject, the way
+ * MessageParser built them before MessageWriter. message_id and the "now" timestamps are taken
+ * from the frame under test; everything else, including how timestamps are formatted, must match.
+ */
+public class MessageWriterTest {
+    private static final String AWKWARD = "quote \" backslash \\ tab \t newline \n nul \u0000 "
+            + "unit \u001f html <b>&amp;</b> = ' line \u2028 para \u2029 emoji 😀 ü €";
+
+    @Test
+    public void deviceInfoMatchesGson() {
+        String frame = MessageParser.createDeviceInfoMessage("device-1", AWKWARD, "14", "1.2.0", 42L, 7L);
+        JsonObject sent = JsonParser.parseString(frame).getAsJsonObject();
+
+        JsonObject gson = new JsonObject();
+        gson.addProperty("type", "device_info");
+        gson.addProperty("message_id", sent.get("message_id").getAsString());
+        gson.addProperty("device_id", "device-1");
+        gson.addProperty("device_name", AWKWARD);
+        gson.addProperty("android_version", "14");
+        gson.addProperty("app_version", "1.2.0");
+        JsonArray codecs = new JsonArray();
+        codecs.add("json");
+        codecs.add(BinaryCodec.CODEC_NAME);
+        gson.add("codecs", codecs);
+        gson.addProperty("last_job_seq", 42L);
+        gson.addProperty("last_status_seq", 7L);
+        gson.addProperty("connected_at", gsonTimestamp(sent.get("connected_at").getAsString()));
+
+        assertEquals(gson.toString(), frame);
+    }
+
+    @Test
+    public void statusUpdateMatchesGson() {
+        StatusUpdate failed = new StatusUpdate("job-1", "failed_retrying", 2, 4, AWKWARD, 1_700_000_000_123L);
+        StatusUpdate sent = new StatusUpdate("job-2", "sent", 1, null, null, 1_700_000_001_000L);
+
+        for (StatusUpdate update : Arrays.asList(failed, sent)) {
+            String frame = MessageParser.createStatusUpdateMessage(update, 99L);
+            JsonObject written = JsonParser.parseString(frame).getAsJsonObject();
+
+            JsonObject gson = new JsonObject();
+            gson.addProperty("type", "status_update");
+            gson.addProperty("message_id", written.get("message_id").getAsString());
+            gson.addProperty("seq", 99L);
+            addStatusFields(gson, update);
+
+            assertEquals(gson.toString(), frame);
+        }
+    }
+
+    @Test
+    public void statusBatchMatchesGson() {
+        List<StatusUpdate> updates = Arrays.asList(
+                new StatusUpdate("job-1", "sending", 1, null, null, 1_700_000_000_001L),
+                new StatusUpdate("job-2", "failed_permanent", 3, 1, AWKWARD, 1_700_000_000_010L),
+                new StatusUpdate("job-3", "delivered", 1, null, null, 1_700_000_000_100L));
+        String frame = MessageParser.createStatusBatchMessage(updates, 1234L);
+        JsonObject sent = JsonParser.parseString(frame).getAsJsonObject();
+
+        JsonObject gson = new JsonObject();
+        gson.addProperty("type", "status_batch");
+        gson.addProperty("message_id", sent.get("message_id").getAsString());
+        gson.addProperty("seq", 1234L);
+        JsonArray array = new JsonArray();
+        for (StatusUpdate update : updates) {
+            JsonObject entry = new JsonObject();
+            addStatusFields(entry, update);
+            array.add(entry);
+        }
+        gson.add("updates", array);
+        gson.addProperty("timestamp", gsonTimestamp(sent.get("timestamp").getAsString()));
+
+        assertEquals(gson.toString(), frame);
+    }
+
+    @Test
+    public void pongMatchesGson() {
+        String frame = MessageParser.createPongMessage("ping-" + AWKWARD);
+        JsonObject sent = JsonParser.parseString(frame).getAsJsonObject();
+
+        JsonObject gson = new JsonObject();
+        gson.addProperty("type", "pong");
+        gson.addProperty("message_id", sent.get("message_id").getAsString());
+        gson.addProperty("ping_message_id", "ping-" + AWKWARD);
+        gson.addProperty("timestamp", gsonTimestamp(sent.get("timestamp").getAsString()));
+
+        assertEquals(gson.toString(), frame);
+    }
+
+    @Test
+    public void timestampsFormatLikeInstant() {
+        long[] times = {0L, 999L, 1_000L, 1_700_000_000_000L, 1_700_000_000_050L, 1_700_000_000_500L,
+                1_700_000_059_999L, 253_402_300_799_999L};
+        for (long time : times) {
+            String frame = MessageWriter.begin("t").timestampField("at", time).end();
+            String at = JsonParser.parseString(frame).getAsJsonObject().get("at").getAsString();
+            assertEquals(Instant.ofEpochMilli(time).toString(), at);
+        }
+    }
+
+    @Test
+    public void messageIdsAreUnique() {
+        assertNotEquals(MessageWriter.nextMessageId(), MessageWriter.nextMessageId());
+    }
+
+    // Field order of the old status_update: null error fields were written as JSON null
+    private static void addStatusFields(JsonObject json, StatusUpdate update) {
+        json.addProperty("job_id", update.jobId);
+        json.addProperty("status", update.status);
+        json.addProperty("attempt", update.attempt);
+        if (update.errorCode != null) {
+            json.addProperty("error_code", update.errorCode);
+        } else {
+            json.add("error_code", JsonNull.INSTANCE);
+        }
+        if (update.errorMessage != null) {
+            json.addProperty("error_message", update.errorMessage);
+        } else {
+            json.add("error_message", JsonNull.INSTANCE);
+        }
+        json.addProperty("timestamp", Instant.ofEpochMilli(update.timestamp).toString());
+    }
+
+    // How Instant.toString() prints the instant the writer formatted
+    private static String gsonTimestamp(String written) {
+        return Instant.parse(written).toString();
+    }
+}
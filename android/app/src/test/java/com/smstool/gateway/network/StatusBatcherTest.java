@@ -0,0 +1,92 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertEquals;
+
+import com.smstool.gateway.util.GatewayMetrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StatusBatcherTest {
+    private final List<List<StatusUpdate>> flushed = new ArrayList<>();
+    private int framesPerFlush = 1;
+    private final StatusBatcher batcher = new StatusBatcher(updates -> {
+        flushed.add(new ArrayList<>(updates));
+        return framesPerFlush;
+    }, 60_000, 100);
+
+    @After
+    public void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    public void laterStatusReplacesPending() {
+        batcher.submit(update("job-1", "sending", 1));
+        batcher.submit(update("job-1", "sent", 1));
+        batcher.submit(update("job-1", "delivered", 1));
+        batcher.flush();
+
+        assertEquals(1, flushed.size());
+        assertEquals("delivered", flushed.get(0).get(0).status);
+    }
+
+    @Test
+    public void lateSendingDoesNotOverwriteSent() {
+        batcher.submit(update("job-1", "sent", 1));
+        batcher.submit(update("job-1", "sending", 1));
+        batcher.flush();
+
+        assertEquals("sent", flushed.get(0).get(0).status);
+    }
+
+    @Test
+    public void retryAttemptsReplaceEachOther() {
+        batcher.submit(update("job-1", "failed_retrying", 1));
+        batcher.submit(update("job-1", "failed_retrying", 2));
+        batcher.submit(update("job-1", "sending", 3));
+        batcher.submit(update("job-1", "failed_retrying", 3));
+        batcher.flush();
+
+        StatusUpdate sent = flushed.get(0).get(0);
+        assertEquals("failed_retrying", sent.status);
+        assertEquals(3, sent.attempt);
+    }
+
+    @Test
+    public void finalStatusIsNeverReplaced() {
+        batcher.submit(update("job-1", "failed_permanent", 3));
+        batcher.submit(update("job-1", "failed_retrying", 2));
+        batcher.submit(update("job-2", "delivered", 1));
+        batcher.submit(update("job-2", "sent", 1));
+        batcher.flush();
+
+        assertEquals("failed_permanent", flushed.get(0).get(0).status);
+        assertEquals("delivered", flushed.get(0).get(1).status);
+    }
+
+    @Test
+    public void framesSentCountsWhatTheSinkSent() {
+        AtomicLong framesSent = GatewayMetrics.counter("status.frames_sent");
+        long before = framesSent.get();
+
+        framesPerFlush = 3;
+        for (int i = 0; i < 3; i++) {
+            batcher.submit(update("job-" + i, "sent", 1));
+        }
+        batcher.flush();
+        framesPerFlush = 0;
+        batcher.submit(update("job-9", "sent", 1));
+        batcher.flush();
+
+        assertEquals(3, framesSent.get() - before);
+    }
+
+    private static StatusUpdate update(String jobId, String status, int attempt) {
+        return new StatusUpdate(jobId, status, attempt, null, null, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,168 @@
+package com.smstool.gateway.network;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WebSocketManagerTest {
+    private MockWebServer server = new MockWebServer();  // replaced when a test severs it
+    // Blocking the server's onOpen stops it reading: no pongs, no drained send buffer
+    private final CountDownLatch serverReading = new CountDownLatch(1);
+    private WebSocketManager manager;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverReading.countDown();
+        manager.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void reconnectsOnTheSameManagerAfterTheLinkIsSevered() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new ServerEndpoint() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                opened.countDown();
+            }
+        }));
+
+        // The replacement server gets a new port, as a freed one cannot be rebound right away
+        MockWebServer replacement = new MockWebServer();
+        replacement.enqueue(new MockResponse().withWebSocketUpgrade(new ServerEndpoint()));
+        replacement.start();
+        String replacementUrl = replacement.url("/ws").toString();
+
+        manager = new WebSocketManager(1000, 1000, 64 * 1024, 16 * 1024);
+        CountDownLatch reconnected = new CountDownLatch(1);
+        AtomicLong reconnectedAt = new AtomicLong();
+        manager.setListener(new WebSocketListener() {
+            private int opens;
+
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                if (++opens == 2) {
+                    reconnectedAt.set(System.nanoTime());
+                    reconnected.countDown();
+                }
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                manager.connect(replacementUrl);
+            }
+        });
+        manager.connect(server.url("/ws").toString());
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+
+        // Shutting the server down drops its sockets without a close handshake
+        long severedAt = System.nanoTime();
+        server.shutdown();
+        server = replacement;
+
+        assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+        long reconnectMillis = TimeUnit.NANOSECONDS.toMillis(reconnectedAt.get() - severedAt);
+        assertTrue("reconnected after " + reconnectMillis + " ms", reconnectMillis < 1000);
+        assertTrue(manager.isConnected());
+    }
+
+    @Test
+    public void clientPingsDetectAHalfOpenLink() throws InterruptedException {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new StalledServer()));
+
+        long pingInterval = 200;
+        manager = new WebSocketManager(pingInterval, 1000, 64 * 1024, 16 * 1024);
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch failed = new CountDownLatch(1);
+        manager.setListener(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                opened.countDown();
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                failed.countDown();
+            }
+        });
+        manager.connect(server.url("/ws").toString());
+
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        long openedAt = System.nanoTime();
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        long detectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt);
+        // The first unanswered ping fails the socket when the next one is due
+        assertTrue("detected after " + detectMillis + " ms", detectMillis < 3 * pingInterval + 200);
+        assertFalse(manager.isConnected());
+    }
+
+    @Test
+    public void backpressurePausesSendsUntilTheQueueDrains() throws InterruptedException {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new StalledServer()));
+
+        manager = new WebSocketManager(60000, 10000, 64 * 1024, 16 * 1024);
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch drained = new CountDownLatch(1);
+        manager.setListener(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                opened.countDown();
+            }
+        });
+        manager.setDrainListener(drained::countDown);
+        manager.connect(server.url("/ws").toString());
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+
+        // Fill the socket buffers until sends are refused; OkHttp itself fails past 16 MB
+        String message = new String(new char[32 * 1024]).replace('\0', 'x');
+        int accepted = 0;
+        while (manager.sendMessage(message)) {
+            accepted++;
+            assertTrue("never refused after " + accepted + " sends", accepted < 400);
+        }
+        assertFalse(manager.sendMessage("{}"));
+        assertTrue(manager.sendControlMessage("{}"));
+
+        serverReading.countDown();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertTrue(manager.sendMessage("{}"));
+    }
+
+    // Server end that answers a close handshake, so shutdown() does not wait on it
+    private static class ServerEndpoint extends WebSocketListener {
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+        }
+    }
+
+    private class StalledServer extends ServerEndpoint {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            try {
+                serverReading.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
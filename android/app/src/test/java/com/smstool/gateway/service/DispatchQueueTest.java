@@ -0,0 +1,162 @@
+package com.smstool.gateway.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import com.smstool.gateway.data.db.SmsJobEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Urgent jobs submitted while a 10k bulk backlog drains through a fake sender that takes 1 ms
+ * per SMS. Draining the backlog takes about 10 s; an urgent job should only wait for a slot
+ * and the few sends already staged ahead of it.
+ */
+public class DispatchQueueTest {
+    private static final int BULK_JOBS = 10_000;
+    private static final int URGENT_JOBS = 200;
+    private static final int MAX_STAGED = 16;
+    private static final long URGENT_SPACING_MILLIS = 5;
+
+    private final ExecutorService radio = Executors.newSingleThreadExecutor();
+    private final Map<String, Long> submittedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> dispatchedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+    private final List<String> sendOrder = new ArrayList<>();
+    private DispatchQueue dispatchQueue;
+    private CountDownLatch urgentSent;
+
+    @Before
+    public void setUp() {
+        // Stub-only: the mock does not record its ~10k invocations
+        SmsSender sender = mock(SmsSender.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            SmsJobEntity job = invocation.getArgument(0);
+            dispatchedAt.put(job.jobId, System.nanoTime());
+            radio.execute(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sentAt.put(job.jobId, System.nanoTime());
+                synchronized (sendOrder) {
+                    sendOrder.add(job.jobId);
+                }
+                if (job.priority > 0) {
+                    urgentSent.countDown();
+                }
+                dispatchQueue.release(job.jobId);
+            });
+            return null;
+        }).when(sender).sendSms(any(SmsJobEntity.class), any());
+        dispatchQueue = new DispatchQueue(sender, MAX_STAGED);
+        urgentSent = new CountDownLatch(URGENT_JOBS);
+    }
+
+    @After
+    public void tearDown() {
+        radio.shutdownNow();
+    }
+
+    @Test
+    public void urgentJobsDoNotWaitBehindBulkBacklog() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < BULK_JOBS; i++) {
+            submit(job("bulk-" + i, 0, now));
+        }
+        for (int i = 0; i < URGENT_JOBS; i++) {
+            Thread.sleep(URGENT_SPACING_MILLIS);
+            submit(job("urgent-" + i, 10, System.currentTimeMillis()));
+        }
+        assertTrue(urgentSent.await(10, TimeUnit.SECONDS));
+
+        long[] queueWait = new long[URGENT_JOBS];
+        long[] untilSent = new long[URGENT_JOBS];
+        for (int i = 0; i < URGENT_JOBS; i++) {
+            String jobId = "urgent-" + i;
+            queueWait[i] = dispatchedAt.get(jobId) - submittedAt.get(jobId);
+            untilSent[i] = sentAt.get(jobId) - submittedAt.get(jobId);
+        }
+        long queueP99 = TimeUnit.NANOSECONDS.toMillis(p99(queueWait));
+        long sentP99 = TimeUnit.NANOSECONDS.toMillis(p99(untilSent));
+        int bulkSent;
+        synchronized (sendOrder) {
+            bulkSent = sendOrder.size() - URGENT_JOBS;
+        }
+        System.out.println("urgent p99: " + queueP99 + " ms in the dispatch queue, " + sentP99
+                + " ms until sent; " + bulkSent + " of " + BULK_JOBS + " bulk jobs sent meanwhile");
+
+        // A slot frees every send (~1 ms); once staged, at most MAX_STAGED sends are ahead
+        assertTrue("queue wait p99 " + queueP99 + " ms", queueP99 <= 20);
+        assertTrue("until sent p99 " + sentP99 + " ms", sentP99 <= 20 + 2 * MAX_STAGED);
+        assertTrue("backlog still draining: " + bulkSent, bulkSent < BULK_JOBS);
+    }
+
+    @Test
+    public void sendsHighestPriorityThenOldestFirst() throws InterruptedException {
+        // Hold the radio until the queue is filled, so nothing is sent while jobs are submitted
+        CountDownLatch queued = new CountDownLatch(1);
+        radio.execute(() -> {
+            try {
+                queued.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        urgentSent = new CountDownLatch(2);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < MAX_STAGED; i++) {
+            submit(job("staged-" + i, 0, now));
+        }
+        submit(job("normal-new", 0, now + 2));
+        submit(job("normal-old", 0, now + 1));
+        submit(job("high", 5, now + 3));
+        submit(job("highest", 9, now + 4));
+        submit(job("highest", 9, now + 4));  // duplicate submit is ignored
+        queued.countDown();
+        assertTrue(urgentSent.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sentAt.size() < MAX_STAGED + 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        synchronized (sendOrder) {
+            assertEquals(Arrays.asList("highest", "high", "normal-old", "normal-new"),
+                    sendOrder.subList(MAX_STAGED, sendOrder.size()));
+        }
+    }
+
+    private void submit(SmsJobEntity job) {
+        submittedAt.put(job.jobId, System.nanoTime());
+        dispatchQueue.submit(job, null);
+    }
+
+    private static SmsJobEntity job(String jobId, int priority, long createdAt) {
+        SmsJobEntity job = new SmsJobEntity(jobId, "+15550100", "hello", "queued", 0, 3,
+                createdAt, createdAt);
+        job.priority = priority;
+        return job;
+    }
+
+    private static long p99(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+    }
+}
@@ -0,0 +1,136 @@
+package com.smstool.gateway.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonParser;
+import com.smstool.gateway.network.MessageDecoder;
+import com.smstool.gateway.network.MessageParser;
+import com.smstool.gateway.network.WebSocketManager;
+import com.smstool.gateway.network.message.PingMessage;
+import com.smstool.gateway.network.message.SmsJobMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Floods the socket reader the way GatewayForegroundService wires it: pings are answered on
+ * the reader, every other frame is handed to a bounded decode stage.
+ */
+public class InboundFloodTest {
+    private static final int FRAMES = 50_000;
+    private static final int PING_EVERY = 500;
+    private static final long MAX_PONG_LATENCY_MILLIS = 250;
+
+    private final MockWebServer server = new MockWebServer();
+    private WebSocketManager manager;
+    private PipelineStage<String> decodeStage;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        manager.close();
+        decodeStage.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void pongsStayFastWhileFiftyThousandFramesArrive() throws InterruptedException {
+        int pings = FRAMES / PING_EVERY;
+        long[] pingSentAt = new long[pings];
+        AtomicLong maxPongLatency = new AtomicLong();
+        CountDownLatch pongs = new CountDownLatch(pings);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                new Thread(() -> flood(webSocket, pingSentAt), "flood").start();
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                String pingId = JsonParser.parseString(text).getAsJsonObject()
+                        .get("ping_message_id").getAsString();
+                long sentAt = pingSentAt[Integer.parseInt(pingId.substring("ping-".length()))];
+                long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt);
+                maxPongLatency.accumulateAndGet(latency, Math::max);
+                pongs.countDown();
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                webSocket.close(code, null);
+            }
+        }));
+
+        AtomicInteger decodedJobs = new AtomicInteger();
+        CountDownLatch decoded = new CountDownLatch(FRAMES);
+        decodeStage = new PipelineStage<>("decode", 256, 1, frames -> decode(frames, decodedJobs, decoded));
+        manager = new WebSocketManager();
+        manager.setListener(new WebSocketListener() {
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                PingMessage ping = MessageDecoder.peekPing(text);
+                if (ping != null) {
+                    manager.sendControlMessage(MessageParser.createPongMessage(ping.messageId));
+                } else {
+                    decodeStage.submit(text);
+                }
+            }
+        });
+        manager.connect(server.url("/ws").toString());
+
+        assertTrue(decoded.await(30, TimeUnit.SECONDS));
+        assertTrue(pongs.await(5, TimeUnit.SECONDS));
+        assertEquals(FRAMES, decodedJobs.get());
+        assertTrue("max pong latency " + maxPongLatency.get() + " ms",
+                maxPongLatency.get() < MAX_PONG_LATENCY_MILLIS);
+    }
+
+    // Server side: sms_job frames with a ping every PING_EVERY frames
+    private static void flood(WebSocket webSocket, long[] pingSentAt) {
+        for (int i = 0; i < FRAMES; i++) {
+            if (i % PING_EVERY == 0) {
+                int ping = i / PING_EVERY;
+                pingSentAt[ping] = System.nanoTime();
+                webSocket.send("{\"type\":\"ping\",\"message_id\":\"ping-" + ping + "\"}");
+            }
+            webSocket.send("{\"type\":\"sms_job\",\"message_id\":\"m-" + i + "\",\"job_id\":\"job-" + i
+                    + "\",\"to\":\"+15550100\",\"body\":\"Your code is " + i + "\",\"seq\":" + i + "}");
+            // Keep the server's own send buffer small, so pings wait on the device and not here
+            while (webSocket.queueSize() > 64 * 1024) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static void decode(List<String> frames, AtomicInteger decodedJobs, CountDownLatch decoded) {
+        for (String frame : frames) {
+            try {
+                if (MessageDecoder.decode(frame) instanceof SmsJobMessage) {
+                    decodedJobs.incrementAndGet();
+                }
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            decoded.countDown();
+        }
+    }
+}
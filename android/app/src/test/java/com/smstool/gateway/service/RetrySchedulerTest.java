@@ -0,0 +1,102 @@
+package com.smstool.gateway.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RetrySchedulerTest {
+    private static final long MAX_LATENESS_MILLIS = 100;
+
+    private MockedStatic<PendingIntent> pendingIntents;
+    private Context context;
+    private RetryScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        context = mock(Context.class);
+        when(context.getSystemService(Context.ALARM_SERVICE)).thenReturn(mock(AlarmManager.class));
+        when(context.getPackageName()).thenReturn("com.smstool.gateway");
+        pendingIntents = mockStatic(PendingIntent.class);
+        pendingIntents.when(() -> PendingIntent.getBroadcast(eq(context), anyInt(), any(Intent.class), anyInt()))
+                .thenReturn(mock(PendingIntent.class));
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+        pendingIntents.close();
+    }
+
+    @Test
+    public void hundredThousandRetriesFireOnTime() throws InterruptedException {
+        int count = 100_000;
+        long[] dueAt = new long[count];
+        long[] firedAt = new long[count];
+        CountDownLatch fired = new CountDownLatch(count);
+        // Fire times go into a preallocated array so the listener itself adds no delay
+        scheduler = new RetryScheduler(context, jobId -> {
+            firedAt[Integer.parseInt(jobId)] = System.currentTimeMillis();
+            fired.countDown();
+        });
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            dueAt[i] = start + 1500 + (i % 2000);  // the first retries wait past TICK_HORIZON
+            scheduler.schedule(String.valueOf(i), dueAt[i]);
+        }
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        long maxLateness = 0;
+        for (int i = 0; i < count; i++) {
+            assertTrue("retry " + i + " fired early", firedAt[i] >= dueAt[i]);
+            maxLateness = Math.max(maxLateness, firedAt[i] - dueAt[i]);
+        }
+        assertTrue("max lateness " + maxLateness + " ms", maxLateness < MAX_LATENESS_MILLIS);
+    }
+
+    @Test
+    public void cancelledAndRescheduledRetriesFireOnlyAtTheirLatestTime() throws InterruptedException {
+        Map<String, Long> firedAt = new ConcurrentHashMap<>();
+        AtomicLong fireCount = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(2);
+        scheduler = new RetryScheduler(context, jobId -> {
+            firedAt.put(jobId, System.currentTimeMillis());
+            fireCount.incrementAndGet();
+            fired.countDown();
+        });
+
+        long now = System.currentTimeMillis();
+        scheduler.schedule("cancelled", now + 100);
+        scheduler.schedule("moved", now + 100);
+        scheduler.schedule("kept", now + 200);
+        scheduler.cancel("cancelled");
+        scheduler.schedule("moved", now + 400);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(2, fireCount.get());
+        assertTrue(firedAt.get("kept") >= now + 200);
+        assertTrue(firedAt.get("moved") >= now + 400);
+    }
+}
@@ -0,0 +1,77 @@
+package com.smstool.gateway.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SendWindowTest {
+    private SendWindow window;
+
+    @After
+    public void tearDown() {
+        window.shutdown();
+    }
+
+    @Test
+    public void nextSendWaitsForTheAcknowledgement() throws InterruptedException {
+        window = new SendWindow(1, 60000, 10000);
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+
+        window.submit("job-1", first::countDown);
+        window.submit("job-2", second::countDown);
+
+        assertTrue(first.await(1, TimeUnit.SECONDS));
+        assertFalse(second.await(100, TimeUnit.MILLISECONDS));
+        window.acknowledge("job-1", true);
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeoutFreesTheSlotAndReportsTheJob() throws InterruptedException {
+        window = new SendWindow(1, 100, 10000);
+        List<String> released = new CopyOnWriteArrayList<>();
+        List<String> timedOut = new CopyOnWriteArrayList<>();
+        CountDownLatch timeout = new CountDownLatch(1);
+        window.setReleaseListener(released::add);
+        window.setTimeoutListener(jobId -> {
+            timedOut.add(jobId);
+            timeout.countDown();
+        });
+        CountDownLatch second = new CountDownLatch(1);
+
+        window.submit("job-1", () -> { });
+        window.submit("job-2", second::countDown);
+
+        assertTrue(timeout.await(1, TimeUnit.SECONDS));
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("job-1"), timedOut);
+
+        // A late SMS_SENT for the timed-out job is ignored
+        window.acknowledge("job-1", true);
+        assertEquals(List.of("job-1"), released);
+    }
+
+    @Test
+    public void acknowledgedSendDoesNotTimeOut() throws InterruptedException {
+        window = new SendWindow(2, 100, 10000);
+        List<String> timedOut = new CopyOnWriteArrayList<>();
+        window.setTimeoutListener(timedOut::add);
+        CountDownLatch sent = new CountDownLatch(1);
+
+        window.submit("job-1", sent::countDown);
+        assertTrue(sent.await(1, TimeUnit.SECONDS));
+        window.acknowledge("job-1", true);
+
+        Thread.sleep(250);
+        assertTrue(timedOut.isEmpty());
+    }
+}
@@ -0,0 +1,179 @@
+package com.smstool.gateway.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.telephony.SmsManager;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+
+import androidx.core.content.ContextCompat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SimDispatcher over 1, 2 and 4 fake SIMs. Each fake SIM sends one SMS at a time and takes a
+ * fixed time per send, like a radio waiting for SMS_SENT; a shared window bounds the sends in
+ * flight, like SendWindow.
+ */
+public class SimDispatcherTest {
+    private static final int JOBS = 600;
+    private static final int WINDOW = 16;
+    private static final long SEND_MILLIS = 2;
+
+    private MockedStatic<ContextCompat> contextCompat;
+    private MockedStatic<SmsManager> smsManagers;
+    private Context context;
+    private SubscriptionManager subscriptionManager;
+    private final List<ExecutorService> radios = new ArrayList<>();
+
+    @Before
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        context = mock(Context.class);
+        subscriptionManager = mock(SubscriptionManager.class);
+        when(context.getSystemService(SubscriptionManager.class)).thenReturn(subscriptionManager);
+        contextCompat = mockStatic(ContextCompat.class);
+        contextCompat.when(() -> ContextCompat.checkSelfPermission(any(Context.class), anyString()))
+                .thenReturn(PackageManager.PERMISSION_GRANTED);
+        // SDK_INT is 0 on the JVM, so SimDispatcher takes the pre-S lookup
+        smsManagers = mockStatic(SmsManager.class);
+        smsManagers.when(() -> SmsManager.getSmsManagerForSubscriptionId(anyInt()))
+                .thenAnswer(invocation -> mock(SmsManager.class));
+    }
+
+    @After
+    public void tearDown() {
+        for (ExecutorService radio : radios) {
+            radio.shutdownNow();
+        }
+        smsManagers.close();
+        contextCompat.close();
+    }
+
+    @Test
+    public void throughputScalesWithSims() throws InterruptedException {
+        double oneSim = jobsPerSecond(run(SEND_MILLIS));
+        double twoSims = jobsPerSecond(run(SEND_MILLIS, SEND_MILLIS));
+        double fourSims = jobsPerSecond(run(SEND_MILLIS, SEND_MILLIS, SEND_MILLIS, SEND_MILLIS));
+        System.out.printf("jobs/sec: 1 SIM %.0f, 2 SIMs %.0f, 4 SIMs %.0f%n", oneSim, twoSims, fourSims);
+
+        assertTrue("2 SIMs " + twoSims + " vs 1 SIM " + oneSim, twoSims > 1.6 * oneSim);
+        assertTrue("4 SIMs " + fourSims + " vs 1 SIM " + oneSim, fourSims > 3 * oneSim);
+    }
+
+    @Test
+    public void jobsAreSpreadEvenlyAcrossEqualSims() throws InterruptedException {
+        for (int simCount = 1; simCount <= 4; simCount++) {
+            long[] sendMillis = new long[simCount];
+            Arrays.fill(sendMillis, SEND_MILLIS);
+            Result result = run(sendMillis);
+
+            int even = JOBS / simCount;
+            for (int sent : result.sentPerSim.values()) {
+                assertTrue(simCount + " SIMs: " + result.sentPerSim, Math.abs(sent - even) <= even / 10);
+            }
+            assertEquals(simCount, result.sentPerSim.size());
+        }
+    }
+
+    @Test
+    public void slowerSimGetsFewerJobs() throws InterruptedException {
+        Result result = run(1, 4);
+
+        int fast = result.sentPerSim.get(1);
+        int slow = result.sentPerSim.get(2);
+        assertEquals(JOBS, fast + slow);
+        assertTrue("fast " + fast + " vs slow " + slow, fast > 2 * slow);
+    }
+
+    // Send JOBS jobs through a dispatcher over one fake SIM per entry of sendMillis
+    private Result run(long... sendMillis) throws InterruptedException {
+        List<SubscriptionInfo> infos = new ArrayList<>();
+        Map<Integer, ExecutorService> radioBySim = new HashMap<>();
+        Map<Integer, Long> millisBySim = new HashMap<>();
+        for (int i = 0; i < sendMillis.length; i++) {
+            int subscriptionId = i + 1;
+            SubscriptionInfo info = mock(SubscriptionInfo.class);
+            when(info.getSubscriptionId()).thenReturn(subscriptionId);
+            infos.add(info);
+            ExecutorService radio = Executors.newSingleThreadExecutor();
+            radios.add(radio);
+            radioBySim.put(subscriptionId, radio);
+            millisBySim.put(subscriptionId, sendMillis[i]);
+        }
+        when(subscriptionManager.getActiveSubscriptionInfoList()).thenReturn(infos);
+        SimDispatcher dispatcher = new SimDispatcher(context);
+        assertEquals(sendMillis.length, dispatcher.getSimCount());
+
+        Semaphore window = new Semaphore(WINDOW);
+        CountDownLatch done = new CountDownLatch(JOBS);
+        Map<Integer, AtomicInteger> sent = new HashMap<>();
+        for (int subscriptionId : radioBySim.keySet()) {
+            sent.put(subscriptionId, new AtomicInteger());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < JOBS; i++) {
+            String jobId = "job-" + i;
+            window.acquire();
+            SimDispatcher.Sim sim = dispatcher.acquire(jobId);
+            radioBySim.get(sim.subscriptionId).execute(() -> {
+                try {
+                    Thread.sleep(millisBySim.get(sim.subscriptionId));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sent.get(sim.subscriptionId).incrementAndGet();
+                dispatcher.release(jobId);
+                window.release();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        Map<Integer, Integer> sentPerSim = new HashMap<>();
+        for (Map.Entry<Integer, AtomicInteger> entry : sent.entrySet()) {
+            sentPerSim.put(entry.getKey(), entry.getValue().get());
+        }
+        return new Result(elapsed, sentPerSim);
+    }
+
+    private static double jobsPerSecond(Result result) {
+        return JOBS * 1e9 / result.elapsedNanos;
+    }
+
+    private static class Result {
+        final long elapsedNanos;
+        final Map<Integer, Integer> sentPerSim;
+
+        Result(long elapsedNanos, Map<Integer, Integer> sentPerSim) {
+            this.elapsedNanos = elapsedNanos;
+            this.sentPerSim = sentPerSim;
+        }
+    }
+}
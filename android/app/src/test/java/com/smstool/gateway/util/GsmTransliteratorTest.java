@@ -0,0 +1,55 @@
+package com.smstool.gateway.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class GsmTransliteratorTest {
+
+    @Test
+    public void replacesTypographicPunctuation() {
+        assertEquals("It's \"fine\" - really...",
+                GsmTransliterator.transliterate("It’s “fine” — really…"));
+    }
+
+    @Test
+    public void dropsDiacriticsMissingFromGsm7() {
+        // è, ü and Ç are in GSM-7 and stay as they are
+        assertEquals("Sao Paulo, cafe, crème, Müller, Ç",
+                GsmTransliterator.transliterate("São Paulo, cafê, crème, Müller, ç"));
+        assertEquals("Lodz", GsmTransliterator.transliterate("Łódź"));
+    }
+
+    @Test
+    public void normalisesSpacesAndDropsZeroWidthCharacters() {
+        assertEquals("10 000 kr", GsmTransliterator.transliterate("10 000​ kr"));
+    }
+
+    @Test
+    public void leavesCharactersWithoutEquivalentUnchanged() {
+        assertEquals("Привет 😀", GsmTransliterator.transliterate("Привет 😀"));
+    }
+
+    @Test
+    public void returnsTheSameStringWhenNothingChanges() {
+        String body = "Your code is 1234";
+
+        assertSame(body, GsmTransliterator.transliterate(body));
+    }
+
+    @Test
+    public void transliteratedBodyFitsGsm7Segments() {
+        StringBuilder body = new StringBuilder("Don’t miss it: ");
+        while (body.length() < 150) {
+            body.append("sale ");
+        }
+        assertEquals(SmsEncoder.UCS_2, SmsEncoder.segment(body.toString()).encoding);
+        assertEquals(3, SmsEncoder.segment(body.toString()).segmentCount());
+
+        SmsEncoder.Segmentation transliterated =
+                SmsEncoder.segment(GsmTransliterator.transliterate(body.toString()));
+        assertEquals(SmsEncoder.GSM_7, transliterated.encoding);
+        assertEquals(1, transliterated.segmentCount());
+    }
+}
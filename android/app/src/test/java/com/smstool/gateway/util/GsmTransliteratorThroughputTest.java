@@ -0,0 +1,104 @@
+package com.smstool.gateway.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.smstool.gateway.MicroBenchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Messages per hour under a fixed per-SIM part budget, with and without transliteration.
+ * Android's outgoing-SMS check and most carriers count every part of a multipart message, so a
+ * body pushed into UCS-2 by one curly quote uses up the budget two to three times as fast.
+ * Transliteration is applied the way intake applies it: only when it needs fewer segments.
+ */
+public class GsmTransliteratorThroughputTest {
+    // Android's default outgoing-SMS check: 30 parts per 30 minutes
+    private static final int PARTS_PER_HOUR = 60;
+    private static final int CORPUS_SIZE = 1_000;
+
+    private static final String[] TEMPLATES = {
+            "Hi %1$s, your order #%2$d is on its way – it’ll arrive tomorrow between 9:00 and 12:00. "
+                    + "Track it at shop.example/t/%2$d or reply “HELP” for support.",
+            "Reminder: your appointment at Café Zürich Straße is on the %3$dth at 14:30. "
+                    + "Please arrive 10 minutes early… Reply “C” to cancel or “R” to reschedule.",
+            "%1$s, we’ve received your payment of 1 250 kr — thank you! Your next invoice will be issued "
+                    + "on the 1st. Questions? Call us or visit our São Paulo office.",
+            "Dear %1$s, Łódź branch update: opening hours change to 08:00–18:00 from Monday. "
+                    + "Our team in Kraków looks forward to seeing you • Best regards, The Team",
+            "Your verification code is %2$d. Don’t share it with anyone.",
+    };
+    private static final String[] NAMES = {"Anna", "José", "Zoë", "Bjørn", "Renée", "Łukasz"};
+
+    private static final List<String> CORPUS = corpus();
+
+    @Test
+    public void moreMessagesPerHourUnderSamePartBudget() {
+        int partsPlain = 0;
+        int partsTransliterated = 0;
+        for (String body : CORPUS) {
+            partsPlain += SmsEncoder.segment(body).segmentCount();
+            partsTransliterated += segmentsAtIntake(body);
+        }
+        double messagesPerHourPlain = PARTS_PER_HOUR * (double) CORPUS.size() / partsPlain;
+        double messagesPerHourTransliterated = PARTS_PER_HOUR * (double) CORPUS.size() / partsTransliterated;
+        System.out.printf("messages/hour at %d parts/hour per SIM: %.1f plain, %.1f transliterated (+%.0f%%)%n",
+                PARTS_PER_HOUR, messagesPerHourPlain, messagesPerHourTransliterated,
+                100 * (messagesPerHourTransliterated / messagesPerHourPlain - 1));
+
+        assertTrue("plain " + partsPlain + " parts, transliterated " + partsTransliterated,
+                messagesPerHourTransliterated > 1.8 * messagesPerHourPlain);
+    }
+
+    @Test
+    public void neverNeedsMoreSegments() {
+        for (String body : CORPUS) {
+            assertTrue(body, segmentsAtIntake(body) <= SmsEncoder.segment(body).segmentCount());
+        }
+        String cyrillic = "Ваш заказ «12345» отправлен – ожидайте доставку завтра. Спасибо, что выбрали нас!";
+        assertEquals(SmsEncoder.segment(cyrillic).segmentCount(), segmentsAtIntake(cyrillic));
+    }
+
+    @Test
+    public void transliterationCostIsNegligibleNextToPacing() throws Exception {
+        MicroBenchmark.Result result = MicroBenchmark.measure(10, () -> {
+            int segments = 0;
+            for (String body : CORPUS) {
+                segments += segmentsAtIntake(body);
+            }
+            return segments;
+        });
+        double perMessage = result.nanosPerOp / CORPUS.size();
+        System.out.printf("transliterate + segment: %.0f ns/message (%.0f messages/s)%n",
+                perMessage, 1e9 / perMessage);
+
+        // One part per minute is the pacing; intake work per message must stay far below that
+        assertTrue(result.toString(), perMessage < 100_000);
+    }
+
+    // Segments sent for a body that opted in, as GatewayForegroundService.newJob decides
+    private static int segmentsAtIntake(String body) {
+        SmsEncoder.Segmentation segmentation = SmsEncoder.segment(body);
+        if (!SmsEncoder.UCS_2.equals(segmentation.encoding)) {
+            return segmentation.segmentCount();
+        }
+        int transliterated = SmsEncoder.segment(GsmTransliterator.transliterate(body)).segmentCount();
+        return Math.min(segmentation.segmentCount(), transliterated);
+    }
+
+    private static List<String> corpus() {
+        Random random = new Random(17);
+        List<String> corpus = new ArrayList<>(CORPUS_SIZE);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            int number = 100_000 + random.nextInt(900_000);
+            corpus.add(String.format(TEMPLATES[i % TEMPLATES.length], name, number, 10 + random.nextInt(19)));
+        }
+        return corpus;
+    }
+}
@@ -0,0 +1,155 @@
+package com.smstool.gateway.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.smstool.gateway.MicroBenchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SmsEncoder over a mixed corpus of gateway traffic (OTPs, GSM-7 notices with extension
+ * characters, long multipart GSM-7, Cyrillic, emoji), checked against a straightforward
+ * indexOf-per-character reference and timed against it.
+ */
+public class SmsEncoderBenchmarkTest {
+    private static final int CORPUS_SIZE = 2_000;
+    private static final String GSM7_BASIC =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?"
+                    + "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+    private static final String GSM7_EXTENSION = "\f^{}\\[~]|€";
+
+    private static final List<String> CORPUS = corpus();
+
+    @Test
+    public void corpusMatchesReference() {
+        for (String body : CORPUS) {
+            SmsEncoder.Segmentation segmentation = SmsEncoder.segment(body);
+            int[] reference = referenceSplitPoints(body);
+
+            assertEquals(body, reference.length, segmentation.segmentCount());
+            for (int i = 0; i < reference.length; i++) {
+                assertEquals(body, reference[i], segmentation.splitPoints[i]);
+            }
+            assertEquals(body, String.join("", segmentation.split(body)));
+        }
+    }
+
+    @Test
+    public void corpusSegmentsFasterThanReference() throws Exception {
+        MicroBenchmark.Result reference = MicroBenchmark.measure(10, () -> {
+            int segments = 0;
+            for (String body : CORPUS) {
+                segments += referenceSplitPoints(body).length;
+            }
+            return segments;
+        });
+        MicroBenchmark.Result encoder = MicroBenchmark.measure(10, () -> {
+            int segments = 0;
+            for (String body : CORPUS) {
+                segments += SmsEncoder.segment(body).segmentCount();
+            }
+            return segments;
+        });
+        double perMessage = encoder.nanosPerOp / CORPUS.size();
+        System.out.printf("SmsEncoder corpus: %.0f ns/message (%.0f messages/s), reference %.0f ns/message%n",
+                perMessage, 1e9 / perMessage, reference.nanosPerOp / CORPUS.size());
+
+        assertTrue("encoder " + encoder + " vs reference " + reference, encoder.nanosPerOp < reference.nanosPerOp);
+    }
+
+    // Mixed traffic, fixed seed so every run measures the same bodies
+    private static List<String> corpus() {
+        Random random = new Random(16);
+        List<String> corpus = new ArrayList<>(CORPUS_SIZE);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            int code = 100_000 + random.nextInt(900_000);
+            switch (i % 10) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                    corpus.add("Your verification code is " + code + ". It expires in 10 minutes.");
+                    break;
+                case 4:
+                case 5:
+                    corpus.add(repeat("Order #" + code + " shipped [tracking: {" + code + "}] total €"
+                            + random.nextInt(500) + ". ", 1 + random.nextInt(4)));
+                    break;
+                case 6:
+                    corpus.add(repeat("Dear customer, your appointment on " + (1 + random.nextInt(28))
+                            + "/06 at 10:30 is confirmed. Reply STOP to opt out. ", 4 + random.nextInt(8)));
+                    break;
+                case 7:
+                case 8:
+                    corpus.add(repeat("Ваш код подтверждения: " + code + ". ", 1 + random.nextInt(6)));
+                    break;
+                default:
+                    corpus.add(repeat("Thanks for your order 😀 " + code + " ", 1 + random.nextInt(5)));
+                    break;
+            }
+        }
+        return corpus;
+    }
+
+    // Reference split: look every character up in the alphabet strings and cut greedily
+    private static int[] referenceSplitPoints(String body) {
+        boolean gsm7 = true;
+        int total = 0;
+        for (int i = 0; i < body.length() && gsm7; i++) {
+            int cost = referenceSeptets(body.charAt(i));
+            gsm7 = cost > 0;
+            total += cost;
+        }
+        List<Integer> points = new ArrayList<>();
+        points.add(0);
+        if (gsm7) {
+            if (total > 160) {
+                int used = 0;
+                for (int i = 0; i < body.length(); i++) {
+                    int cost = referenceSeptets(body.charAt(i));
+                    if (used + cost > 153) {
+                        points.add(i);
+                        used = 0;
+                    }
+                    used += cost;
+                }
+            }
+        } else if (body.length() > 70) {
+            int used = 0;
+            for (int i = 0; i < body.length(); i++) {
+                int units = Character.isHighSurrogate(body.charAt(i)) && i + 1 < body.length() ? 2 : 1;
+                if (used + units > 67) {
+                    points.add(i);
+                    used = 0;
+                }
+                used += units;
+                i += units - 1;
+            }
+        }
+        int[] result = new int[points.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = points.get(i);
+        }
+        return result;
+    }
+
+    private static int referenceSeptets(char c) {
+        if (GSM7_BASIC.indexOf(c) >= 0) {
+            return 1;
+        }
+        return GSM7_EXTENSION.indexOf(c) >= 0 ? 2 : 0;
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder(text.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
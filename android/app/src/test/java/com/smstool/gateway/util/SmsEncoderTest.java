@@ -0,0 +1,98 @@
+package com.smstool.gateway.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SmsEncoderTest {
+
+    @Test
+    public void gsm7BodyUpTo160SeptetsIsOneSegment() {
+        SmsEncoder.Segmentation segmentation = SmsEncoder.segment(repeat('a', 160));
+
+        assertEquals(SmsEncoder.GSM_7, segmentation.encoding);
+        assertEquals(1, segmentation.segmentCount());
+    }
+
+    @Test
+    public void gsm7MultipartSegmentsHold153Septets() {
+        assertArrayEquals(new int[]{0, 153}, SmsEncoder.segment(repeat('a', 161)).splitPoints);
+        assertEquals(3, SmsEncoder.segment(repeat('a', 153 * 3)).segmentCount());
+        assertEquals(4, SmsEncoder.segment(repeat('a', 153 * 3 + 1)).segmentCount());
+    }
+
+    @Test
+    public void extensionCharactersCountAsTwoSeptets() {
+        // 80 x € = 160 septets still fits one SMS, 81 does not
+        assertEquals(1, SmsEncoder.segment(repeat('€', 80)).segmentCount());
+
+        SmsEncoder.Segmentation segmentation = SmsEncoder.segment(repeat('€', 81));
+        assertEquals(SmsEncoder.GSM_7, segmentation.encoding);
+        assertArrayEquals(new int[]{0, 76}, segmentation.splitPoints);  // 76 x 2 = 152 septets
+    }
+
+    @Test
+    public void extensionCharacterIsNotSplitFromItsEscape() {
+        // 152 septets + a 2-septet character would make 154: it moves to the next segment
+        String body = repeat('a', 152) + "[" + repeat('b', 10);
+
+        assertArrayEquals(new int[]{0, 152}, SmsEncoder.segment(body).splitPoints);
+    }
+
+    @Test
+    public void singleNonGsmCharacterFallsBackToUcs2() {
+        SmsEncoder.Segmentation segmentation = SmsEncoder.segment(repeat('a', 100) + "ж");
+
+        assertEquals(SmsEncoder.UCS_2, segmentation.encoding);
+        assertEquals(2, segmentation.segmentCount());
+        // GSM-7 has only the capital Ç
+        assertEquals(SmsEncoder.UCS_2, SmsEncoder.segment("ç").encoding);
+        assertEquals(SmsEncoder.GSM_7, SmsEncoder.segment("Ç Δ Ω ü").encoding);
+    }
+
+    @Test
+    public void ucs2MultipartSegmentsHold67Units() {
+        assertEquals(1, SmsEncoder.segment(repeat('ж', 70)).segmentCount());
+        assertArrayEquals(new int[]{0, 67}, SmsEncoder.segment(repeat('ж', 71)).splitPoints);
+        assertEquals(3, SmsEncoder.segment(repeat('ж', 67 * 3)).segmentCount());
+        assertEquals(4, SmsEncoder.segment(repeat('ж', 67 * 3 + 1)).segmentCount());
+    }
+
+    @Test
+    public void surrogatePairIsNotSplit() {
+        // The emoji's pair would straddle unit 67, so the second segment starts with it
+        String body = repeat('ж', 66) + "😀" + repeat('ж', 10);
+
+        assertArrayEquals(new int[]{0, 66}, SmsEncoder.segment(body).splitPoints);
+    }
+
+    @Test
+    public void splitReassemblesTheBody() {
+        String body = repeat('a', 150) + "{}" + repeat('b', 200);
+        SmsEncoder.Segmentation segmentation = SmsEncoder.segment(body);
+
+        assertEquals(body, String.join("", segmentation.split(body)));
+        assertEquals(segmentation.segmentCount(), segmentation.split(body).size());
+    }
+
+    @Test
+    public void isGsm7CoversBasicAndExtensionTables() {
+        assertTrue(SmsEncoder.isGsm7('@'));
+        assertTrue(SmsEncoder.isGsm7('Ø'));
+        assertTrue(SmsEncoder.isGsm7('€'));
+        assertTrue(SmsEncoder.isGsm7('^'));
+        assertFalse(SmsEncoder.isGsm7('’'));
+        assertFalse(SmsEncoder.isGsm7('ж'));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}